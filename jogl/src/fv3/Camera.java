@@ -19,6 +19,7 @@ package fv3;
 
 import fv3.cop.*;
 
+import fv3.math.Frustum;
 import fv3.math.Vector;
 import fv3.math.Matrix;
 import fv3.tk.Fv3Screen;
@@ -249,6 +250,29 @@ public class Camera
         }
         return projection;
     }
+    /**
+     * @return Clip planes of the projection and view matrices, in
+     * world coordinates
+     */
+    public Frustum getFrustum(){
+
+        return this.getFrustum(new Frustum());
+    }
+    /**
+     * @param frustum Clip planes to redefine, retained from frame to
+     * frame
+     * @return Argument
+     */
+    public Frustum getFrustum(Frustum frustum){
+        Matrix view = this.view;
+        Matrix m = (null != view)?(new Matrix(view)):(new Matrix());
+
+        Matrix projection = this.projection;
+        if (null != projection)
+            m.mul(projection);
+
+        return frustum.set(m);
+    }
     public Camera clear(){
         this.view = null;
         return this;
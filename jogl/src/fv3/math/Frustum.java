@@ -0,0 +1,260 @@
+/*
+ * fv3.math
+ * Copyright (C) 2012, John Pritchard, all rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fv3.math;
+
+/**
+ * Clip planes of a projection and view matrix, and culling of
+ * spheres and boxes against them.
+ *
+ * <p> The six planes are extracted from the rows of the matrix as
+ * in Gribb and Hartmann's "Fast Extraction of Viewing Frustum Planes
+ * from the World-View-Projection Matrix", for the GL clip volume
+ * <i>-w &lt;= x,y,z &lt;= w</i>.  Each plane <i>(A,B,C,D)</i> is
+ * normalized, with positive distance <i>(Ax + By + Cz + D)</i> on the
+ * inside. </p>
+ *
+ * <p> The matrix is the product <i>(P x V)</i> of the projection and
+ * view matrices, for planes in world coordinates.  As {@link
+ * Matrix#mul(Matrix)} computes <i>(this = b x this)</i>, the product
+ * is <code>new Matrix(view).mul(projection)</code>.  Multiplying a
+ * model matrix into the view, as <i>(P x V x M)</i>, gives planes in
+ * model coordinates. </p>
+ *
+ * <h3>Batch</h3>
+ *
+ * <p> The batch kernels {@link #spheres spheres} and {@link #boxes
+ * boxes} take their bounds as structures of arrays, and set the bit
+ * of each bound intersecting the frustum in a bitset of
+ * <code>long</code> words, as in {@link java.util.BitSet#toLongArray()}.
+ * An optional plane cache of one byte per bound retains the plane
+ * that last rejected the bound, which is tested first in the next
+ * frame.  Bounds outside of the frustum are then commonly rejected
+ * by one plane test. </p>
+ *
+ * @see Matrix
+ * @see fv3.Camera#getFrustum()
+ * @author jdp
+ */
+public final class Frustum
+    extends Abstract
+{
+    public final static int Left = 0, Right = 1, Bottom = 2, Top = 3, Near = 4, Far = 5;
+
+    public final static int Planes = 6;
+
+
+    /**
+     * Planes <i>(A,B,C,D)*6</i>
+     */
+    private final double[] planes = new double[4 * Planes];
+
+
+    public Frustum(){
+        super();
+    }
+    /**
+     * @param m Projection and view matrix <i>(P x V)</i>
+     */
+    public Frustum(Matrix m){
+        super();
+        this.set(m);
+    }
+
+
+    /**
+     * Extract the clip planes of a matrix.
+     * @param m Projection and view matrix <i>(P x V)</i>
+     */
+    public Frustum set(Matrix m){
+        final double[] mm = m.array();
+        final double[] p = this.planes;
+        for (int plane = 0; plane < Planes; plane++){
+            /*
+             * Row three plus or minus row zero, one or two
+             */
+            final int row = (plane >> 1);
+            final double sign = (0 == (plane & 1))?(1.0):(-1.0);
+            final double a = mm[M30] + (sign * mm[M00 + row]);
+            final double b = mm[M31] + (sign * mm[M01 + row]);
+            final double c = mm[M32] + (sign * mm[M02 + row]);
+            final double d = mm[M33] + (sign * mm[M03 + row]);
+            final double len = Math.sqrt((a * a) + (b * b) + (c * c));
+            final int o = (4 * plane);
+            if (0.0 < len){
+                p[o]   = (a / len);
+                p[o+1] = (b / len);
+                p[o+2] = (c / len);
+                p[o+3] = (d / len);
+            }
+            else {
+                p[o]   = 0.0;
+                p[o+1] = 0.0;
+                p[o+2] = 0.0;
+                p[o+3] = d;
+            }
+        }
+        return this;
+    }
+    /**
+     * @param plane One of {@link #Left} through {@link #Far}
+     * @return Plane <i>(A,B,C,D)</i>
+     */
+    public double[] getPlane(int plane){
+        return java.util.Arrays.copyOfRange(this.planes,(4 * plane),((4 * plane) + 4));
+    }
+    /**
+     * @return Signed distance of the point from the plane, positive
+     * inside
+     */
+    public double distance(int plane, double x, double y, double z){
+        final double[] p = this.planes;
+        final int o = (4 * plane);
+        return ((p[o] * x) + (p[o+1] * y) + (p[o+2] * z) + p[o+3]);
+    }
+    public boolean contains(double x, double y, double z){
+        final double[] p = this.planes;
+        for (int o = 0; o < (4 * Planes); o += 4){
+            if (0.0 > ((p[o] * x) + (p[o+1] * y) + (p[o+2] * z) + p[o+3]))
+                return false;
+        }
+        return true;
+    }
+    /**
+     * @return False for a sphere wholly outside of the frustum
+     */
+    public boolean intersects(double x, double y, double z, double r){
+        return (0 > this.sphere(x,y,z,r,0));
+    }
+    /**
+     * @return False for a box wholly outside of the frustum
+     */
+    public boolean intersects(double minX, double minY, double minZ, double maxX, double maxY, double maxZ){
+        return (0 > this.box(((minX + maxX) / 2.0),((minY + maxY) / 2.0),((minZ + maxZ) / 2.0),
+                             ((maxX - minX) / 2.0),((maxY - minY) / 2.0),((maxZ - minZ) / 2.0),0));
+    }
+    public boolean intersects(fv3.Bounds b){
+        return this.intersects(b.getBoundsMinX(),b.getBoundsMinY(),b.getBoundsMinZ(),
+                               b.getBoundsMaxX(),b.getBoundsMaxY(),b.getBoundsMaxZ());
+    }
+    /**
+     * Cull a list of spheres.
+     * @param x Center X by sphere
+     * @param y Center Y by sphere
+     * @param z Center Z by sphere
+     * @param r Radius by sphere
+     * @param from Index of the first sphere
+     * @param count Number of spheres
+     * @param visible Bitset by sphere index, set for spheres
+     * intersecting the frustum and cleared for others
+     * @param cache Optional plane cache by sphere index, or null
+     * @return Number of spheres intersecting the frustum
+     */
+    public int spheres(double[] x, double[] y, double[] z, double[] r, int from, int count,
+                       long[] visible, byte[] cache)
+    {
+        int re = 0;
+        for (int cc = from, end = (from + count); cc < end; cc++){
+            final int start = (null != cache)?(cache[cc]):(0);
+            final int fail = this.sphere(x[cc],y[cc],z[cc],r[cc],start);
+            if (0 > fail){
+                visible[cc >>> 6] |= (1L << cc);
+                re += 1;
+            }
+            else {
+                visible[cc >>> 6] &= ~(1L << cc);
+                if (null != cache)
+                    cache[cc] = (byte)fail;
+            }
+        }
+        return re;
+    }
+    /**
+     * Cull a list of axis aligned boxes.
+     * @param minX Least X by box
+     * @param minY Least Y by box
+     * @param minZ Least Z by box
+     * @param maxX Greatest X by box
+     * @param maxY Greatest Y by box
+     * @param maxZ Greatest Z by box
+     * @param from Index of the first box
+     * @param count Number of boxes
+     * @param visible Bitset by box index, set for boxes intersecting
+     * the frustum and cleared for others
+     * @param cache Optional plane cache by box index, or null
+     * @return Number of boxes intersecting the frustum
+     */
+    public int boxes(double[] minX, double[] minY, double[] minZ,
+                     double[] maxX, double[] maxY, double[] maxZ,
+                     int from, int count, long[] visible, byte[] cache)
+    {
+        int re = 0;
+        for (int cc = from, end = (from + count); cc < end; cc++){
+            final int start = (null != cache)?(cache[cc]):(0);
+            final double x0 = minX[cc], y0 = minY[cc], z0 = minZ[cc];
+            final double x1 = maxX[cc], y1 = maxY[cc], z1 = maxZ[cc];
+            final int fail = this.box(((x0 + x1) / 2.0),((y0 + y1) / 2.0),((z0 + z1) / 2.0),
+                                      ((x1 - x0) / 2.0),((y1 - y0) / 2.0),((z1 - z0) / 2.0),start);
+            if (0 > fail){
+                visible[cc >>> 6] |= (1L << cc);
+                re += 1;
+            }
+            else {
+                visible[cc >>> 6] &= ~(1L << cc);
+                if (null != cache)
+                    cache[cc] = (byte)fail;
+            }
+        }
+        return re;
+    }
+    /**
+     * @param start Plane to test first
+     * @return Plane rejecting the sphere, or negative one
+     */
+    private int sphere(double x, double y, double z, double r, int start){
+        final double[] p = this.planes;
+        for (int cc = 0, plane = start; cc < Planes; cc++){
+            final int o = (4 * plane);
+            if (-r > ((p[o] * x) + (p[o+1] * y) + (p[o+2] * z) + p[o+3]))
+                return plane;
+            else if (Planes == ++plane)
+                plane = 0;
+        }
+        return -1;
+    }
+    /**
+     * @param ex Half extent in X
+     * @param ey Half extent in Y
+     * @param ez Half extent in Z
+     * @param start Plane to test first
+     * @return Plane rejecting the box, or negative one
+     */
+    private int box(double x, double y, double z, double ex, double ey, double ez, int start){
+        final double[] p = this.planes;
+        for (int cc = 0, plane = start; cc < Planes; cc++){
+            final int o = (4 * plane);
+            final double a = p[o], b = p[o+1], c = p[o+2];
+            final double r = ((Math.abs(a) * ex) + (Math.abs(b) * ey) + (Math.abs(c) * ez));
+            if (-r > ((a * x) + (b * y) + (c * z) + p[o+3]))
+                return plane;
+            else if (Planes == ++plane)
+                plane = 0;
+        }
+        return -1;
+    }
+}
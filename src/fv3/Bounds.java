@@ -90,6 +90,28 @@ public interface Bounds
                                             this.minZ, this.maxZ);
             this.radius = (this.diameter / 2.0f);
         }
+        /**
+         * Adapt a tight bounding sphere, having the center and
+         * radius of the sphere rather than of the box diagonal.
+         */
+        public CircumSphere(fv3.math.BoundingSphere sphere){
+            super();
+
+            this.minX = sphere.getBoundsMinX();
+            this.minY = sphere.getBoundsMinY();
+            this.minZ = sphere.getBoundsMinZ();
+
+            this.maxX = sphere.getBoundsMaxX();
+            this.maxY = sphere.getBoundsMaxY();
+            this.maxZ = sphere.getBoundsMaxZ();
+
+            this.midX = sphere.centerX;
+            this.midY = sphere.centerY;
+            this.midZ = sphere.centerZ;
+
+            this.diameter = sphere.getDiameter();
+            this.radius = sphere.radius;
+        }
         /**
          * Fetch bounds for a component or region or throw an
          * exception.
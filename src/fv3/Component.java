@@ -58,6 +58,8 @@ public interface Component
      * component coordinate spaces, GL's model view stack depth limit
      * of 32 is imposed.  At most thirty two coordinate spaces may be
      * defined in a single component tree branch from root to leaf.
+     * A deeper tree may be traversed on a {@link
+     * fv3.math.MatrixStack}, loading its top into GL.
      * @return Null to inherit the coordinate space.
      */
     public Matrix getFv3Matrix();
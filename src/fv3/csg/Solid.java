@@ -22,8 +22,8 @@ import fv3.csg.u.Bound;
 import fv3.csg.u.Face;
 import fv3.csg.u.Mesh;
 import fv3.csg.u.Vertex;
+import fv3.math.IndexedVertexArray;
 import fv3.math.Matrix;
-import fv3.math.Vector;
 import fv3.math.VertexArray;
 
 import lxl.List;
@@ -205,12 +205,18 @@ public class Solid
             a.destroy();
         }
     }
+    /**
+     * Transform the faces of this solid, and the vertex array
+     * compiled from them.
+     */
     public final Solid transform(Matrix m){
 
         for (Face face: this){
 
             face.transform(this,m);
         }
+        super.transform(m);
+
         return this;
     }
     /**
@@ -243,30 +249,27 @@ public class Solid
     }
     public final Solid compile(Matrix m){
         if (null != m){
-            super.countVertices(this.mesh.countVertices());
-
-            int nc = 0, vc = 0;
-
-            for (Face face: this.mesh){
 
-                Vector a = m.transform(face.a.getVector());
-                Vector b = m.transform(face.b.getVector());
-                Vector c = m.transform(face.c.getVector());
-                Vector n = a.normal(b,c);
+            this.compile();
 
-                this.setVertex(vc++, a);
-                this.setVertex(vc++, b);
-                this.setVertex(vc++, c);
+            super.transform(m);
 
-                this.setNormal(nc++, n);
-                this.setNormal(nc++, n);
-                this.setNormal(nc++, n);
-            }
             return this;
         }
         else
             return this.compile();
     }
+    /**
+     * Compile, and then weld the vertex array into an indexed vertex
+     * array, as for GL element buffers.
+     * @param e Weld epsilon
+     * @param normals Weld vertices having matching normals (faceted),
+     * or average the normals of welded vertices (smooth)
+     */
+    public final IndexedVertexArray compileIndexed(float e, boolean normals){
+
+        return new IndexedVertexArray(this.compile()).weld(e,normals);
+    }
     public final Bound getBound(){
         return this.mesh.getBound();
     }
@@ -160,7 +160,7 @@ public class GlyphVector
 
                 if (! gl.isSpace()){
 
-                    this.add(gl.translate(this.xp,this.yp,this.zp));
+                    this.add(gl,this.xp,this.yp,this.zp);
 
                     if (cc < term)
 
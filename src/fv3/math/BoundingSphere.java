@@ -0,0 +1,214 @@
+/*
+ * fv3.math
+ * Copyright (C) 2012, John Pritchard, all rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fv3.math;
+
+/**
+ * Bounding sphere of a vertex list by Jack Ritter's "An Efficient
+ * Bounding Sphere" (Graphics Gems, 1990).
+ *
+ * <p> A first pass finds the extreme vertices on each axis, and the
+ * most distant pair of these spans the initial sphere.  A second
+ * pass grows the sphere to each vertex outside of it, moving the
+ * center toward the vertex.  A final pass measures the greatest
+ * distance of a vertex from this center and from the center of the
+ * axis aligned box, and employs the lesser sphere, which guarantees
+ * containment under rounding.  The result is commonly within a few
+ * percent of the minimal sphere, where the sphere around the box of
+ * {@link fv3.Bounds.CircumSphere} may be seventy percent greater in
+ * radius. </p>
+ *
+ * <p> The bounds of this sphere are its enclosing cube. </p>
+ *
+ * @see VertexArray#getBoundingSphere()
+ * @see OrientedBounds
+ * @author jdp
+ */
+public final class BoundingSphere
+    extends Abstract
+    implements fv3.Bounds
+{
+
+    public final float centerX, centerY, centerZ, radius;
+
+
+    public BoundingSphere(VertexArray array){
+        this(array.vertices,array.countVertices);
+    }
+    /**
+     * @param vertices Vertex list in <i>(X,Y,Z)*</i>
+     * @param count Number of vertices
+     */
+    public BoundingSphere(float[] vertices, int count){
+        super();
+        if (1 > count){
+            this.centerX = ZERO;
+            this.centerY = ZERO;
+            this.centerZ = ZERO;
+            this.radius = ZERO;
+        }
+        else {
+            final int end = (3 * count);
+            /*
+             * Extreme vertices on each axis
+             */
+            int minX = 0, maxX = 0, minY = 0, maxY = 0, minZ = 0, maxZ = 0;
+            for (int o = 3; o < end; o += 3){
+                final float x = vertices[o+X], y = vertices[o+Y], z = vertices[o+Z];
+                if (x < vertices[minX+X]) minX = o;
+                if (x > vertices[maxX+X]) maxX = o;
+                if (y < vertices[minY+Y]) minY = o;
+                if (y > vertices[maxY+Y]) maxY = o;
+                if (z < vertices[minZ+Z]) minZ = o;
+                if (z > vertices[maxZ+Z]) maxZ = o;
+            }
+            int a = minX, b = maxX;
+            float span = Distance2(vertices,minX,maxX);
+            {
+                final float dy = Distance2(vertices,minY,maxY);
+                if (dy > span){
+                    span = dy;
+                    a = minY;
+                    b = maxY;
+                }
+                final float dz = Distance2(vertices,minZ,maxZ);
+                if (dz > span){
+                    span = dz;
+                    a = minZ;
+                    b = maxZ;
+                }
+            }
+            double cx = ((vertices[a+X] + vertices[b+X]) / 2.0);
+            double cy = ((vertices[a+Y] + vertices[b+Y]) / 2.0);
+            double cz = ((vertices[a+Z] + vertices[b+Z]) / 2.0);
+            double r = (Math.sqrt(span) / 2.0);
+            double r2 = (r * r);
+            /*
+             * Grow to each vertex outside
+             */
+            for (int o = 0; o < end; o += 3){
+                final double dx = (vertices[o+X] - cx);
+                final double dy = (vertices[o+Y] - cy);
+                final double dz = (vertices[o+Z] - cz);
+                final double d2 = ((dx * dx) + (dy * dy) + (dz * dz));
+                if (d2 > r2){
+                    final double d = Math.sqrt(d2);
+                    final double nr = ((r + d) / 2.0);
+                    final double m = ((nr - r) / d);
+                    cx += (dx * m);
+                    cy += (dy * m);
+                    cz += (dz * m);
+                    r = nr;
+                    r2 = (r * r);
+                }
+            }
+            /*
+             * Exact radii about the center and about the center of
+             * the axis aligned box, employing the lesser
+             */
+            final float rx = (float)cx, ry = (float)cy, rz = (float)cz;
+            final float bx = ((vertices[minX+X] + vertices[maxX+X]) / 2.0f);
+            final float by = ((vertices[minY+Y] + vertices[maxY+Y]) / 2.0f);
+            final float bz = ((vertices[minZ+Z] + vertices[maxZ+Z]) / 2.0f);
+            double r2max = 0.0, b2max = 0.0;
+            for (int o = 0; o < end; o += 3){
+                final float x = vertices[o+X], y = vertices[o+Y], z = vertices[o+Z];
+                final double dx = (x - rx), dy = (y - ry), dz = (z - rz);
+                r2max = Math.max(r2max,((dx * dx) + (dy * dy) + (dz * dz)));
+                final double ex = (x - bx), ey = (y - by), ez = (z - bz);
+                b2max = Math.max(b2max,((ex * ex) + (ey * ey) + (ez * ez)));
+            }
+            final double max2;
+            if (r2max <= b2max){
+                this.centerX = rx;
+                this.centerY = ry;
+                this.centerZ = rz;
+                max2 = r2max;
+            }
+            else {
+                this.centerX = bx;
+                this.centerY = by;
+                this.centerZ = bz;
+                max2 = b2max;
+            }
+            if (0.0 < max2)
+                this.radius = Math.nextUp((float)Math.sqrt(max2));
+            else
+                this.radius = ZERO;
+        }
+    }
+
+
+    public float getDiameter(){
+        return (2.0f * this.radius);
+    }
+    public boolean contains(float x, float y, float z){
+        final float dx = (x - this.centerX), dy = (y - this.centerY), dz = (z - this.centerZ);
+        return (((dx * dx) + (dy * dy) + (dz * dz)) <= (this.radius * this.radius));
+    }
+    public boolean intersects(BoundingSphere that){
+        final float dx = (that.centerX - this.centerX);
+        final float dy = (that.centerY - this.centerY);
+        final float dz = (that.centerZ - this.centerZ);
+        final float r = (this.radius + that.radius);
+        return (((dx * dx) + (dy * dy) + (dz * dz)) <= (r * r));
+    }
+    public float getBoundsMinX(){
+        return (this.centerX - this.radius);
+    }
+    public float getBoundsMidX(){
+        return this.centerX;
+    }
+    public float getBoundsMaxX(){
+        return (this.centerX + this.radius);
+    }
+    public float getBoundsMinY(){
+        return (this.centerY - this.radius);
+    }
+    public float getBoundsMidY(){
+        return this.centerY;
+    }
+    public float getBoundsMaxY(){
+        return (this.centerY + this.radius);
+    }
+    public float getBoundsMinZ(){
+        return (this.centerZ - this.radius);
+    }
+    public float getBoundsMidZ(){
+        return this.centerZ;
+    }
+    public float getBoundsMaxZ(){
+        return (this.centerZ + this.radius);
+    }
+    public String toString(){
+        return String.format("center (%g, %g, %g) radius %g",this.centerX,this.centerY,this.centerZ,this.radius);
+    }
+
+
+    /**
+     * @param a Offset of a vertex
+     * @param b Offset of a vertex
+     * @return Squared distance
+     */
+    private final static float Distance2(float[] v, int a, int b){
+        final float dx = (v[b+X] - v[a+X]);
+        final float dy = (v[b+Y] - v[a+Y]);
+        final float dz = (v[b+Z] - v[a+Z]);
+        return ((dx * dx) + (dy * dy) + (dz * dz));
+    }
+}
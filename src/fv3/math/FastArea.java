@@ -41,6 +41,13 @@ package fv3.math;
  * oriented counterclockwise around the polygon, and negative when
  * oriented clockwise.
  * 
+ * <h3>Strided kernels</h3>
+ * 
+ * The kernels read coordinates in place from an interleaved list at
+ * an offset and stride, as <i>(X,Y,Z)*</i> vertices by <code>(v,
+ * 3*first, 3, count)</code>, wrapping from the last vertex to the
+ * first without copying.  A closing vertex equal to the first adds
+ * nothing to the sums.
  * 
  * @see http://jgt.akpeters.com/papers/Sunday02/
  * @see http://softsurfer.com/Archive/algorithm_0101/algorithm_0101.htm
@@ -51,81 +58,84 @@ public abstract class FastArea
     extends Abstract
 {
     /**
-     * @param x List of X coordinates in polygon
-     * @param y List of Y coordinates in polygon
-     * @return the signed area of a 2D polygon
+     * @param v Interleaved coordinates
+     * @param ofs Offset of the first vertex
+     * @param stride Distance between vertices
+     * @param count Number of vertices
+     * @return The signed area of the polygon projected on the XY
+     * plane
      */
-    public final static float Area(float[] x, float[] y){
-
-        if (x.length == y.length){
-            int n = x.length;
-            {
-                /*
-                 * Guarantee the first two vertices are also at array end
-                 * 
-                 *   x[n]   = x[0];    y[n] = y[0];
-                 * 
-                 *   x[n+1] = x[1];  y[n+1] = y[1];
-                 */
-                int t = (n-1);
-                if (EEQ(x[t],x[0]) && EEQ(y[t],y[0])){
-                    float[] copier;
-                    {
-                        copier = new float[n+1];
-                        System.arraycopy(x,0,copier,0,n);
-                        x = copier;
-                    }
-                    {
-                        copier = new float[n+1];
-                        System.arraycopy(y,0,copier,0,n);
-                        y = copier;
-                    }
-                    n -= 1;
+    public final static float SignedArea(float[] v, int ofs, int stride, int count){
 
-                    x[t+1] = x[1];
-                    y[t+1] = y[1];
-                }
-                else if (EEQ(x[t-1],x[0]) && EEQ(y[t-1],y[0]) &&
-                         EEQ(x[t],x[1]) && EEQ(y[t],y[1]))
-                {
-                    n -= 2;
-                }
-                else {
-                    float[] copier;
-                    {
-                        copier = new float[n+2];
-                        System.arraycopy(x,0,copier,0,n);
-                        x = copier;
-                    }
-                    {
-                        copier = new float[n+2];
-                        System.arraycopy(y,0,copier,0,n);
-                        y = copier;
-                    }
-                    t = n;
+        return (Area2(v,(ofs+X),v,(ofs+Y),stride,count) / 2.0f);
+    }
+    /**
+     * @param v Interleaved coordinates
+     * @param ofs Offset of the first vertex
+     * @param stride Distance between vertices
+     * @param count Number of vertices
+     * @return One for a counterclockwise polygon in the XY plane,
+     * negative one for clockwise, or zero for degenerate
+     */
+    public final static int Orientation(float[] v, int ofs, int stride, int count){
 
-                    x[t] = x[0];
-                    y[t] = y[0];
-                    x[t+1] = x[1];
-                    y[t+1] = y[1];
-                }
-            }
+        return Sign(Area2(v,(ofs+X),v,(ofs+Y),stride,count));
+    }
+    /**
+     * @param v Interleaved <i>(X,Y,Z)</i> coordinates
+     * @param ofs Offset of the first vertex
+     * @param stride Distance between vertices
+     * @param count Number of vertices
+     * @return The area of a 3D planar polygon, the length of its
+     * Newell normal
+     */
+    public final static float Area(float[] v, int ofs, int stride, int count){
 
-            float sum = ZERO;
-            float xm, ylow, yhigh;
+        final float nx = Area2(v,(ofs+Y),v,(ofs+Z),stride,count);
+        final float ny = Area2(v,(ofs+Z),v,(ofs+X),stride,count);
+        final float nz = Area2(v,(ofs+X),v,(ofs+Y),stride,count);
 
-            for (int i = 0; i < n; i++){
+        return ((float)Math.sqrt(nx*nx + ny*ny + nz*nz) / 2.0f);
+    }
+    /**
+     * Newell normal of a 3D nearly planar polygon.
+     * @param v Interleaved <i>(X,Y,Z)</i> coordinates
+     * @param ofs Offset of the first vertex
+     * @param stride Distance between vertices
+     * @param count Number of vertices
+     * @param n Destination of the unit normal <i>(X,Y,Z)</i>
+     * @param no Offset into destination
+     * @return The area of the polygon, or zero for a degenerate
+     * polygon leaving the destination unmodified
+     */
+    public final static float Normal(float[] v, int ofs, int stride, int count, float[] n, int no){
 
-                ylow = y[i];
+        final float nx = Area2(v,(ofs+Y),v,(ofs+Z),stride,count);
+        final float ny = Area2(v,(ofs+Z),v,(ofs+X),stride,count);
+        final float nz = Area2(v,(ofs+X),v,(ofs+Y),stride,count);
 
-                xm = x[i+1];
+        final float len = (float)Math.sqrt(nx*nx + ny*ny + nz*nz);
 
-                yhigh = y[i+2];
+        if (ZERO < len){
+            n[no+X] = (nx / len);
+            n[no+Y] = (ny / len);
+            n[no+Z] = (nz / len);
 
-                sum += (xm * (yhigh - ylow));
-            }
-            return (sum / 2.0f);
+            return (len / 2.0f);
         }
+        else
+            return ZERO;
+    }
+    /**
+     * @param x List of X coordinates in polygon
+     * @param y List of Y coordinates in polygon
+     * @return the signed area of a 2D polygon
+     */
+    public final static float Area(float[] x, float[] y){
+
+        if (x.length == y.length)
+
+            return (Area2(x,0,y,0,1,x.length) / 2.0f);
         else
             throw new IllegalArgumentException();
     }
@@ -135,28 +145,15 @@ public abstract class FastArea
      */
     public final static float Area2(float[] vertices){
 
-        final int count = vertices.length/2;
-
-        float[] x = new float[count], y = new float[count];
-
-        for (int v = 0, p = 0; p < count; p++){
-
-            x[p] = vertices[v++];
-            y[p] = vertices[v++];
-        }
-        return FastArea.Area(x,y);
+        return SignedArea(vertices,0,2,(vertices.length/2));
     }
     /**
      * @param face Face coordinates list in (X,Y,Z)+ order
-     * @return The approximate unit normal of a 3D nearly planar polygon
+     * @return The area of a 3D nearly planar polygon
      */
     public final static float Area(float[] face){
-        float[][] c = Face(face);
-        float[] x = c[0], y = c[1], z = c[2];
-
-        float[] n = Normal(x,y,z);
 
-        return Area(x,y,z,n[0],n[1],n[2]);
+        return Area(face,0,3,(face.length/3));
     }
     /**
      * @param face Face coordinates list in ((X,Y,Z))+ order
@@ -208,8 +205,11 @@ public abstract class FastArea
      * @return The approximate unit normal of a 3D nearly planar polygon
      */
     public final static float[] Normal(float[] face){
-        float[][] c = Face(face);
-        return Normal(c[0],c[1],c[2]);
+        final float[] n = new float[3];
+        if (ZERO < Normal(face,0,3,(face.length/3),n,0))
+            return n;
+        else
+            return new float[]{Float.NaN,Float.NaN,Float.NaN};
     }
     /**
      * @param face Face coordinates list in ((X,Y,Z))+ order
@@ -275,4 +275,33 @@ public abstract class FastArea
         }
         return re;
     }
+    /**
+     * Sunday's formula, with the neighbors of the first and last
+     * vertices wrapping around the polygon.
+     * @param a First coordinate list
+     * @param ao Offset of the first vertex in the first list
+     * @param b Second coordinate list
+     * @param bo Offset of the first vertex in the second list
+     * @param stride Distance between vertices in both lists
+     * @param count Number of vertices
+     * @return Twice the signed area of the polygon in the
+     * <i>(A,B)</i> plane
+     */
+    private final static float Area2(float[] a, int ao, float[] b, int bo, int stride, int count){
+        if (3 > count)
+            return ZERO;
+        else {
+            final int last = ((count - 1) * stride);
+
+            float sum = (a[ao] * (b[bo+stride] - b[bo+last]));
+
+            for (int i = stride; i < last; i += stride){
+
+                sum += (a[ao+i] * (b[bo+i+stride] - b[bo+i-stride]));
+            }
+            sum += (a[ao+last] * (b[bo] - b[bo+last-stride]));
+
+            return sum;
+        }
+    }
 }
@@ -0,0 +1,422 @@
+/*
+ * fv3.math
+ * Copyright (C) 2012, John Pritchard, all rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fv3.math;
+
+import path.Op;
+
+/**
+ * Convert the curves of a {@link Path} to line segments within a
+ * maximum chord deviation.
+ *
+ * <p> Each quadratic and cubic segment is divided into the number of
+ * uniform parameter steps given by Wang's formula, the least number
+ * for which no chord deviates from the curve by more than the error
+ * (compare the sagitta of {@link fv3.csg.u.Error.Circle}).  A flat
+ * segment produces one chord, and a tight segment as many as it
+ * requires.  Points are evaluated by forward differencing. </p>
+ *
+ * <p> A path is flattened in two passes: the first counts vertices
+ * and the second writes them into the vertex arrays sized by the
+ * first, without allocation per segment. </p>
+ *
+ * <p> A close operator adds the chord to the start of its sub path.
+ * A drawing operator following a close begins a new sub path at the
+ * start of the closed sub path. </p>
+ *
+ * @see Path#flatten(float)
+ * @author jdp
+ */
+public final class Flatten
+    extends Abstract
+{
+    /**
+     * Greatest number of chords in a segment
+     */
+    public final static int Limit = 1024;
+
+
+    /**
+     * @param path Source
+     * @param e Maximum chord deviation
+     * @return Vertex array of type Lines
+     */
+    public final static VertexArray Lines(Path path, float e){
+
+        final Walk count = new Walk(path,e,true,null,null);
+
+        final VertexArray re = new VertexArray(VertexArray.Type.Lines,count.total);
+
+        new Walk(path,e,true,(new VertexArray[]{re}),null);
+
+        return re;
+    }
+    /**
+     * @param path Source
+     * @param e Maximum chord deviation
+     * @return One vertex array of type LineStrip for each sub path
+     * having at least two vertices
+     */
+    public final static VertexArray[] LineStrips(Path path, float e){
+
+        final Walk count = new Walk(path,e,false,null,null);
+
+        final int[] counts = count.counts;
+        final int subpaths = count.subpath;
+        final int[] map = new int[subpaths];
+        int many = 0;
+        for (int cc = 0; cc < subpaths; cc++){
+            if (1 < counts[cc])
+                map[cc] = many++;
+            else
+                map[cc] = -1;
+        }
+        final VertexArray[] re = new VertexArray[many];
+        for (int cc = 0; cc < subpaths; cc++){
+            if (-1 < map[cc])
+                re[map[cc]] = new VertexArray(VertexArray.Type.LineStrip,counts[cc]);
+        }
+
+        new Walk(path,e,false,re,map);
+
+        return re;
+    }
+    /**
+     * @param e Maximum chord deviation
+     * @return Number of chords for the quadratic curve from
+     * <i>(x0,y0)</i> to <i>(x2,y2)</i> with control point
+     * <i>(x1,y1)</i>
+     */
+    public final static int CountQuad(float x0, float y0, float x1, float y1, float x2, float y2, float e){
+
+        final double dx = (x0 - (2.0 * x1) + x2);
+        final double dy = (y0 - (2.0 * y1) + y2);
+
+        return Count(0.25 * Math.sqrt((dx * dx) + (dy * dy)),e);
+    }
+    /**
+     * @param e Maximum chord deviation
+     * @return Number of chords for the cubic curve from
+     * <i>(x0,y0)</i> to <i>(x3,y3)</i> with control points
+     * <i>(x1,y1)</i> and <i>(x2,y2)</i>
+     */
+    public final static int CountCubic(float x0, float y0, float x1, float y1, float x2, float y2,
+                                       float x3, float y3, float e)
+    {
+        final double ax = (x0 - (2.0 * x1) + x2);
+        final double ay = (y0 - (2.0 * y1) + y2);
+        final double bx = (x1 - (2.0 * x2) + x3);
+        final double by = (y1 - (2.0 * y2) + y3);
+        final double m = Math.max(((ax * ax) + (ay * ay)),((bx * bx) + (by * by)));
+
+        return Count(0.75 * Math.sqrt(m),e);
+    }
+    /**
+     * Write the points of a quadratic curve following its start
+     * point.
+     * @param n Number of chords
+     * @param dst Destination <i>(X,Y,Z)*</i> having <i>n</i> vertices
+     * from the offset
+     * @param ofs Offset into destination
+     * @return Number of vertices
+     */
+    public final static int Quad(float x0, float y0, float x1, float y1, float x2, float y2,
+                                 int n, float[] dst, int ofs)
+    {
+        final double h = (1.0 / n);
+        final double ax = (x0 - (2.0 * x1) + x2), ay = (y0 - (2.0 * y1) + y2);
+        final double bx = (2.0 * (x1 - x0)), by = (2.0 * (y1 - y0));
+
+        double px = x0, py = y0;
+        double d1x = (ax * h * h) + (bx * h), d1y = (ay * h * h) + (by * h);
+        final double d2x = (2.0 * ax * h * h), d2y = (2.0 * ay * h * h);
+
+        for (int cc = 1, o = ofs; cc < n; cc++, o += 3){
+            px += d1x;
+            py += d1y;
+            d1x += d2x;
+            d1y += d2y;
+            dst[o+X] = (float)px;
+            dst[o+Y] = (float)py;
+            dst[o+Z] = ZERO;
+        }
+        final int o = (ofs + (3 * (n - 1)));
+        dst[o+X] = x2;
+        dst[o+Y] = y2;
+        dst[o+Z] = ZERO;
+        return n;
+    }
+    /**
+     * Write the points of a cubic curve following its start point.
+     * @param n Number of chords
+     * @param dst Destination <i>(X,Y,Z)*</i> having <i>n</i> vertices
+     * from the offset
+     * @param ofs Offset into destination
+     * @return Number of vertices
+     */
+    public final static int Cubic(float x0, float y0, float x1, float y1, float x2, float y2,
+                                  float x3, float y3, int n, float[] dst, int ofs)
+    {
+        final double h = (1.0 / n), h2 = (h * h), h3 = (h2 * h);
+        final double ax = (-x0 + (3.0 * x1) - (3.0 * x2) + x3), ay = (-y0 + (3.0 * y1) - (3.0 * y2) + y3);
+        final double bx = ((3.0 * x0) - (6.0 * x1) + (3.0 * x2)), by = ((3.0 * y0) - (6.0 * y1) + (3.0 * y2));
+        final double cx = (3.0 * (x1 - x0)), cy = (3.0 * (y1 - y0));
+
+        double px = x0, py = y0;
+        double d1x = (ax * h3) + (bx * h2) + (cx * h), d1y = (ay * h3) + (by * h2) + (cy * h);
+        double d2x = (6.0 * ax * h3) + (2.0 * bx * h2), d2y = (6.0 * ay * h3) + (2.0 * by * h2);
+        final double d3x = (6.0 * ax * h3), d3y = (6.0 * ay * h3);
+
+        for (int cc = 1, o = ofs; cc < n; cc++, o += 3){
+            px += d1x;
+            py += d1y;
+            d1x += d2x;
+            d1y += d2y;
+            d2x += d3x;
+            d2y += d3y;
+            dst[o+X] = (float)px;
+            dst[o+Y] = (float)py;
+            dst[o+Z] = ZERO;
+        }
+        final int o = (ofs + (3 * (n - 1)));
+        dst[o+X] = x3;
+        dst[o+Y] = y3;
+        dst[o+Z] = ZERO;
+        return n;
+    }
+    /**
+     * Wang's formula: the number of chords for a maximum deviation
+     * of <i>(d / (n*n))</i>.
+     */
+    private final static int Count(double d, float e){
+        if (!(ZERO < e))
+            throw new IllegalArgumentException(String.valueOf(e));
+        else {
+            final double n = Math.ceil(Math.sqrt(d / e));
+            if (1.0 > n)
+                return 1;
+            else if (Limit < n)
+                return Limit;
+            else
+                return (int)n;
+        }
+    }
+
+
+    /**
+     * One pass over the operators of a path, counting vertices when
+     * the destination is null.
+     */
+    private final static class Walk
+        extends java.lang.Object
+    {
+        final boolean lines;
+
+        final VertexArray[] dst;
+
+        final int[] map;
+        /**
+         * Vertices in each sub path, in the counting pass
+         */
+        int[] counts;
+        /**
+         * Number of sub paths begun
+         */
+        int subpath;
+        /**
+         * Total vertices
+         */
+        int total;
+
+        float[] v;
+
+        int o;
+        /**
+         * Points in the current sub path
+         */
+        int n;
+
+        float px, py, sx, sy;
+        /**
+         * Curve buffer for the lines mode
+         */
+        float[] curve;
+
+
+        Walk(Path path, float e, boolean lines, VertexArray[] dst, int[] map){
+            super();
+            this.lines = lines;
+            this.dst = dst;
+            this.map = map;
+            if (null == dst)
+                this.counts = new int[Math.max(1,path.countOperators())];
+            else if (lines)
+                this.v = dst[0].vertices;
+
+            final float[] vertices = path.vertices;
+            boolean open = false;
+
+            for (int index = 0, count = path.countOperators(); index < count; index++){
+
+                final Op op = path.op(index);
+                final int vo = (3 * path.offset(index));
+
+                if (Op.MoveTo == op){
+                    this.begin(vertices[vo+X],vertices[vo+Y]);
+                    open = true;
+                }
+                else if (Op.Close == op){
+                    if (open){
+                        if (this.px != this.sx || this.py != this.sy)
+                            this.point(this.sx,this.sy);
+                        open = false;
+                    }
+                }
+                else {
+                    if (!open){
+                        this.begin(this.sx,this.sy);
+                        open = true;
+                    }
+                    switch(op){
+                    case LineTo:
+                        this.point(vertices[vo+X],vertices[vo+Y]);
+                        break;
+                    case QuadTo:{
+                        final float x1 = vertices[vo+X], y1 = vertices[vo+Y];
+                        final float x2 = vertices[vo+3+X], y2 = vertices[vo+3+Y];
+                        final int n = CountQuad(this.px,this.py,x1,y1,x2,y2,e);
+                        if (this.counting())
+                            this.skip(n,x2,y2);
+                        else if (this.lines){
+                            Quad(this.px,this.py,x1,y1,x2,y2,n,this.curve(n),0);
+                            this.points(n);
+                        }
+                        else {
+                            this.o += (3 * Quad(this.px,this.py,x1,y1,x2,y2,n,this.v,this.o));
+                            this.moved(n,x2,y2);
+                        }
+                        break;
+                    }
+                    case CubicTo:{
+                        final float x1 = vertices[vo+X], y1 = vertices[vo+Y];
+                        final float x2 = vertices[vo+3+X], y2 = vertices[vo+3+Y];
+                        final float x3 = vertices[vo+6+X], y3 = vertices[vo+6+Y];
+                        final int n = CountCubic(this.px,this.py,x1,y1,x2,y2,x3,y3,e);
+                        if (this.counting())
+                            this.skip(n,x3,y3);
+                        else if (this.lines){
+                            Cubic(this.px,this.py,x1,y1,x2,y2,x3,y3,n,this.curve(n),0);
+                            this.points(n);
+                        }
+                        else {
+                            this.o += (3 * Cubic(this.px,this.py,x1,y1,x2,y2,x3,y3,n,this.v,this.o));
+                            this.moved(n,x3,y3);
+                        }
+                        break;
+                    }
+                    default:
+                        throw new IllegalStateException(op.name());
+                    }
+                }
+            }
+        }
+
+
+        boolean counting(){
+            return (null == this.dst);
+        }
+        void begin(float x, float y){
+            final int subpath = this.subpath++;
+            this.n = 0;
+            this.sx = x;
+            this.sy = y;
+            if (!this.lines && !this.counting()){
+                final int index = this.map[subpath];
+                this.v = ((-1 < index)?(this.dst[index].vertices):(null));
+                this.o = 0;
+            }
+            this.point(x,y);
+        }
+        void point(float x, float y){
+            if (this.lines){
+                if (0 < this.n){
+                    if (!this.counting()){
+                        final float[] v = this.v;
+                        final int o = this.o;
+                        v[o+X] = this.px;
+                        v[o+Y] = this.py;
+                        v[o+3+X] = x;
+                        v[o+3+Y] = y;
+                        this.o = (o + 6);
+                    }
+                    this.total += 2;
+                }
+            }
+            else if (this.counting())
+                this.counts[this.subpath-1] += 1;
+            else if (null != this.v){
+                final float[] v = this.v;
+                final int o = this.o;
+                v[o+X] = x;
+                v[o+Y] = y;
+                this.o = (o + 3);
+            }
+            this.n += 1;
+            this.px = x;
+            this.py = y;
+        }
+        /**
+         * Count a curve.
+         */
+        void skip(int n, float x, float y){
+            if (this.lines)
+                this.total += (2 * n);
+            else
+                this.counts[this.subpath-1] += n;
+
+            this.moved(n,x,y);
+        }
+        /**
+         * Account for a curve written in place.
+         */
+        void moved(int n, float x, float y){
+            this.n += n;
+            this.px = x;
+            this.py = y;
+        }
+        float[] curve(int n){
+            float[] curve = this.curve;
+            if (null == curve || curve.length < (3 * n))
+                this.curve = curve = new float[3 * Limit];
+            return curve;
+        }
+        /**
+         * Emit the curve buffer as line segments.
+         */
+        void points(int n){
+            final float[] curve = this.curve;
+            for (int cc = 0, end = (3 * n); cc < end; cc += 3)
+                this.point(curve[cc+X],curve[cc+Y]);
+        }
+    }
+
+
+    private Flatten(){
+        super();
+    }
+}
@@ -0,0 +1,455 @@
+/*
+ * fv3.math
+ * Copyright (C) 2012, John Pritchard, all rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fv3.math;
+
+/**
+ * An indexed vertex list: a pool of <i>(X,Y,Z)*</i> vertices with
+ * optional normals, and a list of indeces into the pool for one of
+ * the primitive types {@link VertexArray.Type#Triangles Triangles},
+ * {@link VertexArray.Type#Lines Lines} or {@link
+ * VertexArray.Type#Points Points}.
+ *
+ * <h3>Conversion</h3>
+ *
+ * <p> A {@link VertexArray} of any type except {@link
+ * VertexArray.Type#Path Path} is converted by index arithmetic:
+ * strips, fans, quads and polygons to triangles, and line strips and
+ * loops to lines. </p>
+ *
+ * <h3>Welding</h3>
+ *
+ * <p> The {@link #weld} operation merges vertices within an epsilon
+ * into the first of their kind via a spatial hash, and rewrites the
+ * indeces.  Welding positions only averages the normals of the
+ * merged vertices, producing smooth normals from faceted input.
+ * </p>
+ *
+ * <h3>Element buffers</h3>
+ *
+ * <p> The index list is available as {@link #indeces int} or {@link
+ * #indecesShort short} for <code>GL_ELEMENT_ARRAY_BUFFER</code>, see
+ * {@link #elementType}. </p>
+ *
+ * <h3>Vertex cache</h3>
+ *
+ * <p> The {@link #optimize} operation reorders a triangle list for
+ * the post transform vertex cache and the vertex pool for fetch
+ * locality, see {@link VertexCache}. </p>
+ *
+ * @see VertexArray
+ * @author jdp
+ */
+public class IndexedVertexArray
+    extends AbstractFloat
+    implements fv3.Model.Element
+{
+    /**
+     * Largest pool for {@link #indecesShort}
+     */
+    public final static int ShortIndexLimit = 0x10000;
+
+
+    protected final VertexArray.Type type;
+
+    protected int countVertices;
+
+    protected float[] vertices;
+
+    protected float[] normals;
+
+    protected int countIndeces;
+
+    protected int[] indeces;
+
+
+    /**
+     * Convert without welding.
+     */
+    public IndexedVertexArray(VertexArray src){
+        super();
+        if (null == src)
+            throw new IllegalArgumentException();
+        else {
+            this.type = PrimitiveFor(src.type);
+
+            final int count = src.countVertices;
+
+            this.countVertices = count;
+            this.vertices = java.util.Arrays.copyOf(src.vertices,(3 * count));
+
+            if (src.useNormals && null != src.normals)
+                this.normals = java.util.Arrays.copyOf(src.normals,(3 * count));
+
+            this.indeces = Indeces(src.type,count);
+            this.countIndeces = this.indeces.length;
+        }
+    }
+    /**
+     * Convert and weld positions and normals.
+     * @param e Weld epsilon
+     */
+    public IndexedVertexArray(VertexArray src, float e){
+        this(src);
+        this.weld(e,true);
+    }
+    /**
+     * @param type One of Triangles, Lines or Points
+     * @param vertices Pool in <i>(X,Y,Z)*</i>
+     * @param normals Optional normals for the vertices pool
+     * @param indeces List of indeces into the pool
+     */
+    public IndexedVertexArray(VertexArray.Type type, float[] vertices, float[] normals, int[] indeces){
+        super();
+        if (null == vertices || null == indeces)
+            throw new IllegalArgumentException();
+        else if (null != normals && normals.length != vertices.length)
+            throw new IllegalArgumentException(String.format("%d/%d",normals.length,vertices.length));
+        else {
+            this.type = PrimitiveFor(type);
+            this.countVertices = (vertices.length/3);
+            this.vertices = vertices;
+            this.normals = normals;
+            this.countIndeces = indeces.length;
+            this.indeces = indeces;
+        }
+    }
+
+
+    public final VertexArray.Type getType(){
+        return this.type;
+    }
+    public final int countVertices(){
+        return this.countVertices;
+    }
+    public final int countIndeces(){
+        return this.countIndeces;
+    }
+    public final int countFaces(){
+        return VertexArray.CountFaces(this.type,this.countIndeces);
+    }
+    public final boolean hasNormals(){
+        return (null != this.normals);
+    }
+    /**
+     * @return Vertex pool
+     */
+    public final float[] array(){
+        return this.vertices;
+    }
+    /**
+     * @return Normals pool, or null
+     */
+    public final float[] normals(){
+        return this.normals;
+    }
+    public final int[] indeces(){
+        return this.indeces;
+    }
+    /**
+     * @return Index list for <code>GL_UNSIGNED_SHORT</code>
+     * @exception java.lang.IllegalStateException For a vertex pool
+     * larger than {@link #ShortIndexLimit}
+     */
+    public final short[] indecesShort(){
+        if (ShortIndexLimit < this.countVertices)
+            throw new IllegalStateException(String.valueOf(this.countVertices));
+        else {
+            final int[] indeces = this.indeces;
+            final int count = this.countIndeces;
+            final short[] re = new short[count];
+            for (int cc = 0; cc < count; cc++){
+                re[cc] = (short)indeces[cc];
+            }
+            return re;
+        }
+    }
+    /**
+     * @return One of <code>GL_UNSIGNED_SHORT</code> or
+     * <code>GL_UNSIGNED_INT</code>
+     */
+    public final int elementType(){
+        if (ShortIndexLimit < this.countVertices)
+            return GL_UNSIGNED_INT;
+        else
+            return GL_UNSIGNED_SHORT;
+    }
+    /**
+     * @return One of <code>GL_TRIANGLES</code>, <code>GL_LINES</code>
+     * or <code>GL_POINTS</code>
+     */
+    public final int mode(){
+        switch(this.type){
+        case Triangles:
+            return GL_TRIANGLES;
+        case Lines:
+            return GL_LINES;
+        default:
+            return GL_POINTS;
+        }
+    }
+    /**
+     * Merge vertices within the epsilon, in place.
+     *
+     * @param e Weld epsilon, or zero for exact matching
+     * @param normals When true and normals are present, merged
+     * vertices must have matching normals.  Otherwise the normals of
+     * merged vertices are averaged.
+     * @return This
+     */
+    public final IndexedVertexArray weld(float e, boolean normals){
+
+        final float[] vertices = this.vertices;
+        final float[] vnormals = this.normals;
+        final boolean matchNormals = (normals && null != vnormals);
+        final boolean sumNormals = (!normals && null != vnormals);
+        final int count = this.countVertices;
+
+        final float cell = (ZERO < e)?(e):(ZERO);
+        final int ncells = (ZERO < cell)?(1):(0);
+        final float te = Math.max(ZERO,e);
+
+        int tableSize = 16;
+        while (tableSize < (count<<1))
+            tableSize <<= 1;
+        final int mask = (tableSize-1);
+
+        final int[] table = new int[tableSize];
+        java.util.Arrays.fill(table,-1);
+        final int[] chain = new int[count];
+        final int[] remap = new int[count];
+
+        int unique = 0;
+
+        for (int v = 0; v < count; v++){
+
+            final int vo = (3 * v);
+            final float vx = vertices[vo+X];
+            final float vy = vertices[vo+Y];
+            final float vz = vertices[vo+Z];
+
+            final int cx = Cell(vx,cell);
+            final int cy = Cell(vy,cell);
+            final int cz = Cell(vz,cell);
+
+            int found = -1;
+            search:
+            for (int dx = -ncells; dx <= ncells; dx++){
+                for (int dy = -ncells; dy <= ncells; dy++){
+                    for (int dz = -ncells; dz <= ncells; dz++){
+
+                        for (int u = table[Hash(cx+dx,cy+dy,cz+dz) & mask]; -1 < u; u = chain[u]){
+
+                            final int uo = (3 * u);
+
+                            if (te >= Math.abs(vertices[uo+X]-vx) &&
+                                te >= Math.abs(vertices[uo+Y]-vy) &&
+                                te >= Math.abs(vertices[uo+Z]-vz))
+                            {
+                                if (matchNormals &&
+                                    !(te >= Math.abs(vnormals[uo+X]-vnormals[vo+X]) &&
+                                      te >= Math.abs(vnormals[uo+Y]-vnormals[vo+Y]) &&
+                                      te >= Math.abs(vnormals[uo+Z]-vnormals[vo+Z])))
+                                {
+                                    continue;
+                                }
+                                found = u;
+                                break search;
+                            }
+                        }
+                    }
+                }
+            }
+
+            if (-1 < found){
+                remap[v] = found;
+
+                if (sumNormals){
+                    final int uo = (3 * found);
+                    vnormals[uo+X] += vnormals[vo+X];
+                    vnormals[uo+Y] += vnormals[vo+Y];
+                    vnormals[uo+Z] += vnormals[vo+Z];
+                }
+            }
+            else {
+                /*
+                 * Compact in place: the unique index never exceeds
+                 * the source index
+                 */
+                final int u = unique++;
+                final int uo = (3 * u);
+                if (u != v){
+                    vertices[uo+X] = vx;
+                    vertices[uo+Y] = vy;
+                    vertices[uo+Z] = vz;
+                    if (null != vnormals){
+                        vnormals[uo+X] = vnormals[vo+X];
+                        vnormals[uo+Y] = vnormals[vo+Y];
+                        vnormals[uo+Z] = vnormals[vo+Z];
+                    }
+                }
+                remap[v] = u;
+
+                final int h = (Hash(cx,cy,cz) & mask);
+                chain[u] = table[h];
+                table[h] = u;
+            }
+        }
+
+        final int[] indeces = this.indeces;
+        for (int cc = 0, nc = this.countIndeces; cc < nc; cc++){
+
+            indeces[cc] = remap[indeces[cc]];
+        }
+
+        if (sumNormals){
+            for (int uo = 0, end = (3 * unique); uo < end; uo += 3){
+
+                final float nx = vnormals[uo+X];
+                final float ny = vnormals[uo+Y];
+                final float nz = vnormals[uo+Z];
+                final float nl = (float)Math.sqrt((nx*nx)+(ny*ny)+(nz*nz));
+                if (ZERO < nl){
+                    vnormals[uo+X] = (nx / nl);
+                    vnormals[uo+Y] = (ny / nl);
+                    vnormals[uo+Z] = (nz / nl);
+                }
+            }
+        }
+
+        if (unique != count){
+            this.countVertices = unique;
+            this.vertices = java.util.Arrays.copyOf(vertices,(3 * unique));
+            if (null != vnormals)
+                this.normals = java.util.Arrays.copyOf(vnormals,(3 * unique));
+        }
+        return this;
+    }
+    /**
+     * Reorder triangles for the vertex cache and vertices for fetch
+     * locality, in place, as after {@link #weld}.
+     * @return Average cache miss ratios before and after
+     * @exception java.lang.IllegalStateException For a primitive
+     * other than triangles
+     */
+    public final VertexCache optimize(){
+        if (VertexArray.Type.Triangles == this.type)
+            return new VertexCache(this);
+        else
+            throw new IllegalStateException(this.type.name());
+    }
+    /**
+     * Expand the indeces into a vertex array of the primitive type.
+     */
+    public final VertexArray toVertexArray(){
+
+        final float[] vertices = this.vertices;
+        final float[] normals = this.normals;
+        final int[] indeces = this.indeces;
+        final int count = this.countIndeces;
+
+        VertexArray re = new VertexArray(this.type,count);
+
+        final float[] reV = re.vertices;
+
+        for (int cc = 0, ro = 0; cc < count; cc++, ro += 3){
+
+            System.arraycopy(vertices,(3 * indeces[cc]),reV,ro,3);
+        }
+
+        if (null != normals && null != re.normals){
+
+            final float[] reN = re.normals;
+
+            for (int cc = 0, ro = 0; cc < count; cc++, ro += 3){
+
+                System.arraycopy(normals,(3 * indeces[cc]),reN,ro,3);
+            }
+            re.useNormals = true;
+        }
+        else if (re.hasFaces())
+            re.computeNormals();
+
+        return re;
+    }
+
+
+    /**
+     * @return The indexed primitive for the vertex array type
+     */
+    public final static VertexArray.Type PrimitiveFor(VertexArray.Type type){
+        switch(type){
+        case Points:
+            return VertexArray.Type.Points;
+        case Lines:
+        case LineStrip:
+        case LineLoop:
+            return VertexArray.Type.Lines;
+        case Triangles:
+        case TriangleStrip:
+        case TriangleFan:
+        case Quads:
+        case QuadStrip:
+        case Polygon:
+            return VertexArray.Type.Triangles;
+        case Path:
+            throw new IllegalStateException("Convert path to triangles or lines");
+        default:
+            throw new IllegalStateException(type.name());
+        }
+    }
+    /**
+     * Index list for the primitive of a vertex array type, preserving
+     * the face vertex order of {@link VertexArray#FaceIndeces}.
+     *
+     * @param type Vertex array type
+     * @param count Number of vertices in the vertex array
+     */
+    public final static int[] Indeces(VertexArray.Type type, int count){
+
+        final VertexArray.Type primitive = PrimitiveFor(type);
+
+        if (primitive == type){
+            switch(type){
+            case Lines:
+                count &= ~1;
+                break;
+            case Triangles:
+                count = (3 * (count/3));
+                break;
+            default:
+                break;
+            }
+        }
+        final int[] re = new int[VertexArrayConvert.CountVertices(primitive,type,count)];
+
+        VertexArrayConvert.Indeces(type,count,primitive,re,0);
+
+        return re;
+    }
+    private final static int Cell(float v, float cell){
+        if (ZERO < cell)
+            return (int)Math.floor(v / cell);
+        else
+            return Float.floatToIntBits(v + ZERO);
+    }
+    private final static int Hash(int x, int y, int z){
+        int h = (x * 0x8da6b343) ^ (y * 0xd8163841) ^ (z * 0xcb1ab31f);
+        return (h ^ (h >>> 16));
+    }
+}
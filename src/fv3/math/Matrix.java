@@ -135,22 +135,81 @@ public class Matrix
     public final Matrix mul(Matrix m){
         return this.mul(m.m);
     }
+    /**
+     * Multiply the argument into this matrix, <code>(this = b x
+     * this)</code> in GL storage order.
+     */
     public final Matrix mul(float[] b){
-        float[] m = this.m;
-        float[] a = m.clone();
-        int i, j, k;
-        float ab;
-        for (j = 0; j < 4; j++) {
-            for (i = 0; i < 4; i++) {
-                ab = ZERO;
-                for (k = 0; k < 4; k++){
-                    ab += (a[I(k,i)] * b[I(j,k)]);
-                }
-                m[I(j,i)] = Z1(ab);
-            }
-        }
+        Mul(b,this.m,this.m);
         return this;
     }
+    /**
+     * Multiply the argument with this matrix into the destination,
+     * <code>(dst = b x this)</code>, leaving this matrix unchanged.
+     * @param b Left operand
+     * @param dst Destination, may be this or the argument
+     * @return Destination
+     */
+    public final Matrix mul(Matrix b, Matrix dst){
+        Mul(b.m,this.m,dst.m);
+        return dst;
+    }
+    /**
+     * Multiply the affine argument into this affine matrix, ignoring
+     * the bottom rows of both.
+     * @see #isAffine()
+     */
+    public final Matrix mulAffine(Matrix m){
+        MulAffine(m.m,this.m,this.m);
+        return this;
+    }
+    /**
+     * @return The bottom row is <code>(0,0,0,1)</code>
+     */
+    public final boolean isAffine(){
+        return IsAffine(this.m);
+    }
+    /**
+     * Replace this matrix with its inverse.
+     * @exception java.lang.IllegalStateException For a singular matrix
+     */
+    public final Matrix invert(){
+        if (Invert(this.m,this.m))
+            return this;
+        else
+            throw new IllegalStateException("Singular matrix");
+    }
+    /**
+     * Replace this affine matrix with its inverse.
+     * @exception java.lang.IllegalStateException For a singular matrix
+     * @see #isAffine()
+     */
+    public final Matrix invertAffine(){
+        if (InvertAffine(this.m,this.m))
+            return this;
+        else
+            throw new IllegalStateException("Singular matrix");
+    }
+    /**
+     * @return Normal matrix of the upper three by three in row major
+     * order, see {@link #NormalMatrix(float[],float[])}
+     * @exception java.lang.IllegalStateException For a singular matrix
+     */
+    public final float[] normalMatrix(){
+        return this.normalMatrix(new float[9]);
+    }
+    /**
+     * @param dst Destination for the normal matrix of the upper
+     * three by three in row major order
+     * @return Destination
+     * @exception java.lang.IllegalStateException For a singular matrix
+     */
+    public final float[] normalMatrix(float[] dst){
+        if (NormalMatrix(this.m,dst))
+            return dst;
+        else
+            throw new IllegalStateException("Singular matrix");
+    }
     public final Matrix translate(float x, float y, float z){
         float[] m = this.m;
 
@@ -643,6 +702,294 @@ public class Matrix
     }
 
 
+    /**
+     * Matrix product <code>(dst = b x a)</code> in GL storage order,
+     * as in {@link #mul(float[])}.  The destination may be either
+     * operand.
+     */
+    public final static float[] Mul(float[] b, float[] a, float[] dst){
+
+        return Mul(b,0,a,0,dst,0);
+    }
+    /**
+     * Affine matrix product <code>(dst = b x a)</code>, ignoring the
+     * bottom rows of the operands.  The destination may be either
+     * operand.
+     */
+    public final static float[] MulAffine(float[] b, float[] a, float[] dst){
+
+        return MulAffine(b,0,a,0,dst,0);
+    }
+    public final static boolean IsAffine(float[] m){
+        return IsAffine(m,0);
+    }
+    /**
+     * Matrix product <code>(dst = b x a)</code> in GL storage order,
+     * as in {@link #mul(float[])}, over matrices at offsets into
+     * their arrays.  The destination may be either operand.
+     */
+    public final static float[] Mul(float[] b, int bo, float[] a, int ao, float[] dst, int dsto){
+
+        if (IsAffine(a,ao) && IsAffine(b,bo))
+
+            return MulAffine(b,bo,a,ao,dst,dsto);
+        else {
+            final float a00 = a[ao+M00], a01 = a[ao+M01], a02 = a[ao+M02], a03 = a[ao+M03];
+            final float a10 = a[ao+M10], a11 = a[ao+M11], a12 = a[ao+M12], a13 = a[ao+M13];
+            final float a20 = a[ao+M20], a21 = a[ao+M21], a22 = a[ao+M22], a23 = a[ao+M23];
+            final float a30 = a[ao+M30], a31 = a[ao+M31], a32 = a[ao+M32], a33 = a[ao+M33];
+
+            final float b00 = b[bo+M00], b01 = b[bo+M01], b02 = b[bo+M02], b03 = b[bo+M03];
+            final float b10 = b[bo+M10], b11 = b[bo+M11], b12 = b[bo+M12], b13 = b[bo+M13];
+            final float b20 = b[bo+M20], b21 = b[bo+M21], b22 = b[bo+M22], b23 = b[bo+M23];
+            final float b30 = b[bo+M30], b31 = b[bo+M31], b32 = b[bo+M32], b33 = b[bo+M33];
+
+            dst[dsto+M00] = Z1(b00*a00 + b01*a10 + b02*a20 + b03*a30);
+            dst[dsto+M01] = Z1(b00*a01 + b01*a11 + b02*a21 + b03*a31);
+            dst[dsto+M02] = Z1(b00*a02 + b01*a12 + b02*a22 + b03*a32);
+            dst[dsto+M03] = Z1(b00*a03 + b01*a13 + b02*a23 + b03*a33);
+
+            dst[dsto+M10] = Z1(b10*a00 + b11*a10 + b12*a20 + b13*a30);
+            dst[dsto+M11] = Z1(b10*a01 + b11*a11 + b12*a21 + b13*a31);
+            dst[dsto+M12] = Z1(b10*a02 + b11*a12 + b12*a22 + b13*a32);
+            dst[dsto+M13] = Z1(b10*a03 + b11*a13 + b12*a23 + b13*a33);
+
+            dst[dsto+M20] = Z1(b20*a00 + b21*a10 + b22*a20 + b23*a30);
+            dst[dsto+M21] = Z1(b20*a01 + b21*a11 + b22*a21 + b23*a31);
+            dst[dsto+M22] = Z1(b20*a02 + b21*a12 + b22*a22 + b23*a32);
+            dst[dsto+M23] = Z1(b20*a03 + b21*a13 + b22*a23 + b23*a33);
+
+            dst[dsto+M30] = Z1(b30*a00 + b31*a10 + b32*a20 + b33*a30);
+            dst[dsto+M31] = Z1(b30*a01 + b31*a11 + b32*a21 + b33*a31);
+            dst[dsto+M32] = Z1(b30*a02 + b31*a12 + b32*a22 + b33*a32);
+            dst[dsto+M33] = Z1(b30*a03 + b31*a13 + b32*a23 + b33*a33);
+
+            return dst;
+        }
+    }
+    /**
+     * Affine matrix product <code>(dst = b x a)</code>, ignoring the
+     * bottom rows of the operands, over matrices at offsets into
+     * their arrays.  The destination may be either operand.
+     */
+    public final static float[] MulAffine(float[] b, int bo, float[] a, int ao, float[] dst, int dsto){
+
+        final float a00 = a[ao+M00], a01 = a[ao+M01], a02 = a[ao+M02], a03 = a[ao+M03];
+        final float a10 = a[ao+M10], a11 = a[ao+M11], a12 = a[ao+M12], a13 = a[ao+M13];
+        final float a20 = a[ao+M20], a21 = a[ao+M21], a22 = a[ao+M22], a23 = a[ao+M23];
+
+        final float b00 = b[bo+M00], b01 = b[bo+M01], b02 = b[bo+M02], b03 = b[bo+M03];
+        final float b10 = b[bo+M10], b11 = b[bo+M11], b12 = b[bo+M12], b13 = b[bo+M13];
+        final float b20 = b[bo+M20], b21 = b[bo+M21], b22 = b[bo+M22], b23 = b[bo+M23];
+
+        dst[dsto+M00] = Z1(b00*a00 + b01*a10 + b02*a20);
+        dst[dsto+M01] = Z1(b00*a01 + b01*a11 + b02*a21);
+        dst[dsto+M02] = Z1(b00*a02 + b01*a12 + b02*a22);
+        dst[dsto+M03] = Z1(b00*a03 + b01*a13 + b02*a23 + b03);
+
+        dst[dsto+M10] = Z1(b10*a00 + b11*a10 + b12*a20);
+        dst[dsto+M11] = Z1(b10*a01 + b11*a11 + b12*a21);
+        dst[dsto+M12] = Z1(b10*a02 + b11*a12 + b12*a22);
+        dst[dsto+M13] = Z1(b10*a03 + b11*a13 + b12*a23 + b13);
+
+        dst[dsto+M20] = Z1(b20*a00 + b21*a10 + b22*a20);
+        dst[dsto+M21] = Z1(b20*a01 + b21*a11 + b22*a21);
+        dst[dsto+M22] = Z1(b20*a02 + b21*a12 + b22*a22);
+        dst[dsto+M23] = Z1(b20*a03 + b21*a13 + b22*a23 + b23);
+
+        dst[dsto+M30] = ZERO;
+        dst[dsto+M31] = ZERO;
+        dst[dsto+M32] = ZERO;
+        dst[dsto+M33] = 1.0f;
+
+        return dst;
+    }
+    /**
+     * Singularity relative to the Hadamard bound on the determinant,
+     * the product of the row lengths, so that small scales like font
+     * em units or millimeters to meters remain invertible.
+     */
+    private final static boolean Singular(float det, float r0, float r1, float r2){
+        return (ZERO == det || Math.abs(det) <= (EPS * r0 * r1 * r2));
+    }
+    private final static boolean Singular(float det, float r0, float r1, float r2, float r3){
+        return (ZERO == det || Math.abs(det) <= (EPS * r0 * r1 * r2 * r3));
+    }
+    private final static float Norm(float a, float b, float c){
+        return (float)Math.sqrt(a*a + b*b + c*c);
+    }
+    private final static float Norm(float a, float b, float c, float d){
+        return (float)Math.sqrt(a*a + b*b + c*c + d*d);
+    }
+    public final static boolean IsAffine(float[] m, int mo){
+        return (ZERO == m[mo+M30] && ZERO == m[mo+M31] && ZERO == m[mo+M32] && 1.0f == m[mo+M33]);
+    }
+    /**
+     * General inverse by cofactors.  The destination may be the
+     * source.
+     * @return False for a singular matrix, leaving the destination
+     * unmodified
+     */
+    public final static boolean Invert(float[] m, float[] dst){
+
+        if (IsAffine(m))
+            return InvertAffine(m,dst);
+        else {
+            final float a00 = m[M00], a01 = m[M01], a02 = m[M02], a03 = m[M03];
+            final float a10 = m[M10], a11 = m[M11], a12 = m[M12], a13 = m[M13];
+            final float a20 = m[M20], a21 = m[M21], a22 = m[M22], a23 = m[M23];
+            final float a30 = m[M30], a31 = m[M31], a32 = m[M32], a33 = m[M33];
+
+            final float s0 = a00*a11 - a10*a01;
+            final float s1 = a00*a12 - a10*a02;
+            final float s2 = a00*a13 - a10*a03;
+            final float s3 = a01*a12 - a11*a02;
+            final float s4 = a01*a13 - a11*a03;
+            final float s5 = a02*a13 - a12*a03;
+
+            final float c5 = a22*a33 - a32*a23;
+            final float c4 = a21*a33 - a31*a23;
+            final float c3 = a21*a32 - a31*a22;
+            final float c2 = a20*a33 - a30*a23;
+            final float c1 = a20*a32 - a30*a22;
+            final float c0 = a20*a31 - a30*a21;
+
+            final float det = (s0*c5 - s1*c4 + s2*c3 + s3*c2 - s4*c1 + s5*c0);
+
+            if (Singular(det,Norm(a00,a01,a02,a03),Norm(a10,a11,a12,a13),
+                         Norm(a20,a21,a22,a23),Norm(a30,a31,a32,a33)))
+                return false;
+            else {
+                final float d = (1.0f / det);
+
+                dst[M00] = ( a11*c5 - a12*c4 + a13*c3) * d;
+                dst[M01] = (-a01*c5 + a02*c4 - a03*c3) * d;
+                dst[M02] = ( a31*s5 - a32*s4 + a33*s3) * d;
+                dst[M03] = (-a21*s5 + a22*s4 - a23*s3) * d;
+
+                dst[M10] = (-a10*c5 + a12*c2 - a13*c1) * d;
+                dst[M11] = ( a00*c5 - a02*c2 + a03*c1) * d;
+                dst[M12] = (-a30*s5 + a32*s2 - a33*s1) * d;
+                dst[M13] = ( a20*s5 - a22*s2 + a23*s1) * d;
+
+                dst[M20] = ( a10*c4 - a11*c2 + a13*c0) * d;
+                dst[M21] = (-a00*c4 + a01*c2 - a03*c0) * d;
+                dst[M22] = ( a30*s4 - a31*s2 + a33*s0) * d;
+                dst[M23] = (-a20*s4 + a21*s2 - a23*s0) * d;
+
+                dst[M30] = (-a10*c3 + a11*c1 - a12*c0) * d;
+                dst[M31] = ( a00*c3 - a01*c1 + a02*c0) * d;
+                dst[M32] = (-a30*s3 + a31*s1 - a32*s0) * d;
+                dst[M33] = ( a20*s3 - a21*s1 + a22*s0) * d;
+
+                return true;
+            }
+        }
+    }
+    /**
+     * Affine inverse, ignoring the bottom row of the source.  The
+     * destination may be the source.
+     * @return False for a singular matrix, leaving the destination
+     * unmodified
+     */
+    public final static boolean InvertAffine(float[] m, float[] dst){
+
+        final float a = m[M00], b = m[M01], c = m[M02], tx = m[M03];
+        final float d = m[M10], e = m[M11], f = m[M12], ty = m[M13];
+        final float g = m[M20], h = m[M21], i = m[M22], tz = m[M23];
+
+        final float c00 = (e*i - f*h), c01 = (f*g - d*i), c02 = (d*h - e*g);
+
+        final float det = (a*c00 + b*c01 + c*c02);
+
+        if (Singular(det,Norm(a,b,c),Norm(d,e,f),Norm(g,h,i)))
+            return false;
+        else {
+            final float s = (1.0f / det);
+
+            final float r00 = c00 * s;
+            final float r01 = (c*h - b*i) * s;
+            final float r02 = (b*f - c*e) * s;
+            final float r10 = c01 * s;
+            final float r11 = (a*i - c*g) * s;
+            final float r12 = (c*d - a*f) * s;
+            final float r20 = c02 * s;
+            final float r21 = (b*g - a*h) * s;
+            final float r22 = (a*e - b*d) * s;
+
+            dst[M00] = r00;
+            dst[M01] = r01;
+            dst[M02] = r02;
+            dst[M03] = -(r00*tx + r01*ty + r02*tz);
+
+            dst[M10] = r10;
+            dst[M11] = r11;
+            dst[M12] = r12;
+            dst[M13] = -(r10*tx + r11*ty + r12*tz);
+
+            dst[M20] = r20;
+            dst[M21] = r21;
+            dst[M22] = r22;
+            dst[M23] = -(r20*tx + r21*ty + r22*tz);
+
+            dst[M30] = ZERO;
+            dst[M31] = ZERO;
+            dst[M32] = ZERO;
+            dst[M33] = 1.0f;
+
+            return true;
+        }
+    }
+    /**
+     * Cofactor matrix of the upper three by three, in row major
+     * order.  This is the inverse transpose scaled by the
+     * determinant.  The destination may not be the source.
+     * @return Determinant of the upper three by three
+     */
+    public final static float Cofactor(float[] m, float[] dst){
+
+        final float a = m[M00], b = m[M01], c = m[M02];
+        final float d = m[M10], e = m[M11], f = m[M12];
+        final float g = m[M20], h = m[M21], i = m[M22];
+
+        dst[0] = (e*i - f*h);
+        dst[1] = (f*g - d*i);
+        dst[2] = (d*h - e*g);
+        dst[3] = (c*h - b*i);
+        dst[4] = (a*i - c*g);
+        dst[5] = (b*g - a*h);
+        dst[6] = (b*f - c*e);
+        dst[7] = (c*d - a*f);
+        dst[8] = (a*e - b*d);
+
+        return (a*dst[0] + b*dst[1] + c*dst[2]);
+    }
+    /**
+     * Normal matrix of the upper three by three, in row major order,
+     * as for {@link VertexArrayTransform#Normals}: the {@link
+     * #Cofactor cofactor matrix} scaled by the inverse magnitude of
+     * the determinant.  This is the inverse transpose, negated under
+     * reflection so that normals follow face winding.
+     * @return False for a singular matrix, leaving the destination
+     * undefined
+     */
+    public final static boolean NormalMatrix(float[] m, float[] dst){
+
+        final float det = Cofactor(m,dst);
+
+        if (Singular(det,Norm(m[M00],m[M01],m[M02]),Norm(m[M10],m[M11],m[M12]),Norm(m[M20],m[M21],m[M22])))
+            return false;
+        else {
+            final float s = (1.0f / Math.abs(det));
+
+            for (int cc = 0; cc < 9; cc++)
+                dst[cc] *= s;
+
+            return true;
+        }
+    }
+
+
     private final static float[] Identity = {1.0f, ZERO, ZERO, ZERO, 
                                              ZERO, 1.0f, ZERO, ZERO, 
                                              ZERO, ZERO, 1.0f, ZERO, 
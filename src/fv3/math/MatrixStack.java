@@ -0,0 +1,227 @@
+/*
+ * fv3.math
+ * Copyright (C) 2012, John Pritchard, all rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fv3.math;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Software matrix stack in a single pool of floats, for the
+ * traversal of component trees deeper than GL's model view stack.
+ *
+ * <p> The stack always has a top matrix, initially the identity.
+ * The operations {@link #push()}, {@link #pop()}, {@link #mul}, and
+ * {@link #peek} do not allocate, excepting that the pool is grown
+ * when a push exceeds its capacity.  Multiplication composes as in
+ * {@link fv3.Component#composeFv3Matrix()}, so that pushing the
+ * matrices of a branch from root to leaf produces its composed
+ * matrix at the top of the stack. </p>
+ *
+ * <p> The top of the stack is loaded into GL in one call from the
+ * native order direct {@link #buffer()}, as for
+ * <code>glLoadMatrixf</code> or <code>glUniformMatrix4fv</code>.
+ * </p>
+ *
+ * @see Matrix
+ * @author jdp
+ */
+public class MatrixStack
+    extends Abstract
+{
+    public final static int DefaultDepth = 32;
+
+    private final static float[] Identity = new Matrix().array();
+
+
+    private float[] pool;
+    /**
+     * Offset of the top matrix into the pool
+     */
+    private int top;
+
+    private final FloatBuffer buffer = ByteBuffer.allocateDirect(16 * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+
+    public MatrixStack(){
+        this(DefaultDepth);
+    }
+    /**
+     * @param depth Initial capacity in matrices
+     */
+    public MatrixStack(int depth){
+        super();
+        if (0 < depth){
+            this.pool = new float[16 * depth];
+            System.arraycopy(Identity,0,this.pool,0,16);
+        }
+        else
+            throw new IllegalArgumentException(String.valueOf(depth));
+    }
+
+
+    /**
+     * @return Number of matrices on the stack, at least one
+     */
+    public final int depth(){
+        return ((this.top >> 4) + 1);
+    }
+    /**
+     * @return Number of matrices available without growing the pool
+     */
+    public final int capacity(){
+        return (this.pool.length >> 4);
+    }
+    /**
+     * Drop all but the bottom of the stack, and load the identity.
+     */
+    public final MatrixStack clear(){
+        this.top = 0;
+        System.arraycopy(Identity,0,this.pool,0,16);
+        return this;
+    }
+    /**
+     * Duplicate the top of the stack.
+     */
+    public final MatrixStack push(){
+        final int from = this.top;
+        final int to = (from + 16);
+        float[] pool = this.pool;
+        if (to == pool.length)
+            this.pool = pool = java.util.Arrays.copyOf(pool,(pool.length << 1));
+
+        System.arraycopy(pool,from,pool,to,16);
+        this.top = to;
+        return this;
+    }
+    /**
+     * Duplicate the top of the stack and multiply the argument into
+     * it.
+     * @param m Optional matrix, null to duplicate the top only
+     */
+    public final MatrixStack push(Matrix m){
+        this.push();
+        if (null != m)
+            return this.mul(m.array());
+        else
+            return this;
+    }
+    /**
+     * Duplicate the top of the stack and multiply the matrix of the
+     * component into it, when present.
+     */
+    public final MatrixStack push(fv3.Component c){
+
+        return this.push(c.getFv3Matrix());
+    }
+    /**
+     * Drop the top of the stack.
+     * @exception java.lang.IllegalStateException On stack underflow
+     */
+    public final MatrixStack pop(){
+        if (0 < this.top){
+            this.top -= 16;
+            return this;
+        }
+        else
+            throw new IllegalStateException("Stack underflow");
+    }
+    /**
+     * Multiply the argument into the top of the stack.
+     */
+    public final MatrixStack mul(Matrix m){
+        return this.mul(m.array());
+    }
+    /**
+     * Multiply the argument into the top of the stack, <code>(top = m
+     * x top)</code> as in {@link Matrix#mul(float[])}.
+     */
+    public final MatrixStack mul(float[] m){
+        final float[] pool = this.pool;
+        final int top = this.top;
+        Matrix.Mul(m,0,pool,top,pool,top);
+        return this;
+    }
+    /**
+     * Replace the top of the stack.
+     */
+    public final MatrixStack load(Matrix m){
+        System.arraycopy(m.array(),0,this.pool,this.top,16);
+        return this;
+    }
+    public final MatrixStack identity(){
+        System.arraycopy(Identity,0,this.pool,this.top,16);
+        return this;
+    }
+    /**
+     * Copy the top of the stack into the argument.
+     * @return Argument
+     */
+    public final float[] peek(float[] dst){
+        System.arraycopy(this.pool,this.top,dst,0,16);
+        return dst;
+    }
+    /**
+     * Copy the top of the stack into the argument.
+     * @return Argument
+     */
+    public final Matrix peek(Matrix dst){
+        this.peek(dst.array());
+        return dst;
+    }
+    /**
+     * @return The pool, valid until the next push
+     * @see #offset()
+     */
+    public final float[] array(){
+        return this.pool;
+    }
+    /**
+     * @return Offset of the top of the stack into the pool
+     */
+    public final int offset(){
+        return this.top;
+    }
+    /**
+     * @return Native order direct buffer holding a copy of the top of
+     * the stack in GL storage order, positioned at zero
+     */
+    public final FloatBuffer buffer(){
+        final FloatBuffer buffer = this.buffer;
+        buffer.clear();
+        buffer.put(this.pool,this.top,16);
+        buffer.rewind();
+        return buffer;
+    }
+    /**
+     * Transform the vertex <i>(X,Y,Z)</i> at the offset into the
+     * argument by the top of the stack.
+     */
+    public final void transform(float[] v, int ofs){
+        final float[] m = this.pool;
+        final int o = this.top;
+        final float vX = v[ofs+X];
+        final float vY = v[ofs+Y];
+        final float vZ = v[ofs+Z];
+
+        v[ofs+X] = m[o+M00] * vX + m[o+M01] * vY + m[o+M02] * vZ + m[o+M03];
+        v[ofs+Y] = m[o+M10] * vX + m[o+M11] * vY + m[o+M12] * vZ + m[o+M13];
+        v[ofs+Z] = m[o+M20] * vX + m[o+M21] * vY + m[o+M22] * vZ + m[o+M23];
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * fv3.math
+ * Copyright (C) 2012, John Pritchard, all rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fv3.math;
+
+/**
+ * Oriented bounding box of a vertex list by principal component
+ * analysis.
+ *
+ * <p> A first pass accumulates the mean and covariance of the
+ * vertices, and the eigenvectors of the covariance (by Jacobi
+ * rotation) are the axes of the box.  A second pass projects the
+ * vertices onto the axes for the center of the box.  When the axis
+ * aligned box of the vertices has the lesser volume, as for an axis
+ * aligned solid having unevenly distributed vertices, it is
+ * employed instead. </p>
+ *
+ * <p> A last pass measures the extents about the float center and
+ * axes by the arithmetic of {@link #contains}, so that the box
+ * contains each of its vertices. </p>
+ *
+ * <p> The bounds of this box are the axis aligned box enclosing its
+ * corners and its vertices. </p>
+ *
+ * @see VertexArray#getOrientedBounds()
+ * @see BoundingSphere
+ * @author jdp
+ */
+public final class OrientedBounds
+    extends Abstract
+    implements fv3.Bounds
+{
+
+    public final float centerX, centerY, centerZ;
+    /**
+     * Unit axes in rows <i>(X,Y,Z)*3</i>
+     */
+    private final float[] axes = new float[9];
+    /**
+     * Half extent on each axis
+     */
+    private final float[] extents = new float[3];
+
+    private final float minX, maxX, minY, maxY, minZ, maxZ;
+
+
+    public OrientedBounds(VertexArray array){
+        this(array.vertices,array.countVertices);
+    }
+    /**
+     * @param vertices Vertex list in <i>(X,Y,Z)*</i>
+     * @param count Number of vertices
+     */
+    public OrientedBounds(float[] vertices, int count){
+        super();
+        final float[] axes = this.axes;
+        final float[] extents = this.extents;
+        float minX = ZERO, maxX = ZERO, minY = ZERO, maxY = ZERO, minZ = ZERO, maxZ = ZERO;
+        if (1 > count){
+            axes[0] = 1.0f;
+            axes[4] = 1.0f;
+            axes[8] = 1.0f;
+            this.centerX = ZERO;
+            this.centerY = ZERO;
+            this.centerZ = ZERO;
+        }
+        else {
+            final int end = (3 * count);
+            /*
+             * Mean, covariance and axis aligned box
+             */
+            double sx = 0, sy = 0, sz = 0;
+            double sxx = 0, sxy = 0, sxz = 0, syy = 0, syz = 0, szz = 0;
+            float ax0 = vertices[X], ax1 = ax0, ay0 = vertices[Y], ay1 = ay0, az0 = vertices[Z], az1 = az0;
+            for (int o = 0; o < end; o += 3){
+                final double x = vertices[o+X], y = vertices[o+Y], z = vertices[o+Z];
+                sx += x;
+                sy += y;
+                sz += z;
+                sxx += (x * x);
+                sxy += (x * y);
+                sxz += (x * z);
+                syy += (y * y);
+                syz += (y * z);
+                szz += (z * z);
+                ax0 = Math.min(ax0,vertices[o+X]);
+                ax1 = Math.max(ax1,vertices[o+X]);
+                ay0 = Math.min(ay0,vertices[o+Y]);
+                ay1 = Math.max(ay1,vertices[o+Y]);
+                az0 = Math.min(az0,vertices[o+Z]);
+                az1 = Math.max(az1,vertices[o+Z]);
+            }
+            final double mx = (sx / count), my = (sy / count), mz = (sz / count);
+            final double[] c = {
+                ((sxx / count) - (mx * mx)), ((sxy / count) - (mx * my)), ((sxz / count) - (mx * mz)),
+                ((sxy / count) - (mx * my)), ((syy / count) - (my * my)), ((syz / count) - (my * mz)),
+                ((sxz / count) - (mx * mz)), ((syz / count) - (my * mz)), ((szz / count) - (mz * mz))
+            };
+            final double[] e = new double[9];
+            Jacobi(c,e);
+            /*
+             * Extents on the principal axes
+             */
+            final double[] lo = {Double.MAX_VALUE,Double.MAX_VALUE,Double.MAX_VALUE};
+            final double[] hi = {-Double.MAX_VALUE,-Double.MAX_VALUE,-Double.MAX_VALUE};
+            for (int o = 0; o < end; o += 3){
+                final double x = (vertices[o+X] - mx), y = (vertices[o+Y] - my), z = (vertices[o+Z] - mz);
+                for (int k = 0; k < 3; k++){
+                    final double p = ((x * e[k]) + (y * e[3+k]) + (z * e[6+k]));
+                    if (p < lo[k]) lo[k] = p;
+                    if (p > hi[k]) hi[k] = p;
+                }
+            }
+            final double volume = ((hi[0] - lo[0]) * (hi[1] - lo[1]) * (hi[2] - lo[2]));
+            final double aligned = ((double)(ax1 - ax0) * (ay1 - ay0) * (az1 - az0));
+            if (aligned <= volume){
+                axes[0] = 1.0f;
+                axes[4] = 1.0f;
+                axes[8] = 1.0f;
+                this.centerX = ((ax0 + ax1) / 2.0f);
+                this.centerY = ((ay0 + ay1) / 2.0f);
+                this.centerZ = ((az0 + az1) / 2.0f);
+            }
+            else {
+                double cx = mx, cy = my, cz = mz;
+                for (int k = 0; k < 3; k++){
+                    final double m = ((lo[k] + hi[k]) / 2.0);
+                    cx += (m * e[k]);
+                    cy += (m * e[3+k]);
+                    cz += (m * e[6+k]);
+                    /*
+                     * Row (k) is the eigenvector in column (k)
+                     */
+                    axes[(3 * k) + X] = (float)e[k];
+                    axes[(3 * k) + Y] = (float)e[3+k];
+                    axes[(3 * k) + Z] = (float)e[6+k];
+                }
+                this.centerX = (float)cx;
+                this.centerY = (float)cy;
+                this.centerZ = (float)cz;
+            }
+            /*
+             * Exact extents about the float center and axes, by the
+             * arithmetic of contains, so that the box contains its
+             * vertices
+             */
+            final float cx = this.centerX, cy = this.centerY, cz = this.centerZ;
+            for (int o = 0; o < end; o += 3){
+                final float dx = (vertices[o+X] - cx), dy = (vertices[o+Y] - cy), dz = (vertices[o+Z] - cz);
+                for (int k = 0, a = 0; k < 3; k++, a += 3){
+                    final float p = Math.abs((dx * axes[a+X]) + (dy * axes[a+Y]) + (dz * axes[a+Z]));
+                    if (p > extents[k])
+                        extents[k] = p;
+                }
+            }
+            /*
+             * Axis aligned bounds of the box, rounded outward and
+             * including those of the vertices
+             */
+            float rx = ZERO, ry = ZERO, rz = ZERO;
+            for (int k = 0; k < 3; k++){
+                rx += (Math.abs(axes[(3 * k) + X]) * extents[k]);
+                ry += (Math.abs(axes[(3 * k) + Y]) * extents[k]);
+                rz += (Math.abs(axes[(3 * k) + Z]) * extents[k]);
+            }
+            minX = Math.min(ax0,Math.nextDown(cx - rx));
+            maxX = Math.max(ax1,Math.nextUp(cx + rx));
+            minY = Math.min(ay0,Math.nextDown(cy - ry));
+            maxY = Math.max(ay1,Math.nextUp(cy + ry));
+            minZ = Math.min(az0,Math.nextDown(cz - rz));
+            maxZ = Math.max(az1,Math.nextUp(cz + rz));
+        }
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+        this.minZ = minZ;
+        this.maxZ = maxZ;
+    }
+
+
+    /**
+     * @param axis Zero, one or two
+     * @return Unit axis <i>(X,Y,Z)</i>
+     */
+    public float[] getAxis(int axis){
+        return java.util.Arrays.copyOfRange(this.axes,(3 * axis),((3 * axis) + 3));
+    }
+    /**
+     * @param axis Zero, one or two
+     * @return Half extent of the box on the axis
+     */
+    public float getExtent(int axis){
+        return this.extents[axis];
+    }
+    public float getVolume(){
+        return (8.0f * this.extents[0] * this.extents[1] * this.extents[2]);
+    }
+    public boolean contains(float x, float y, float z){
+        final float dx = (x - this.centerX), dy = (y - this.centerY), dz = (z - this.centerZ);
+        final float[] axes = this.axes;
+        for (int k = 0, o = 0; k < 3; k++, o += 3){
+            final float p = ((dx * axes[o+X]) + (dy * axes[o+Y]) + (dz * axes[o+Z]));
+            if (Math.abs(p) > this.extents[k])
+                return false;
+        }
+        return true;
+    }
+    /**
+     * @return Eight corners in <i>(X,Y,Z)*</i>
+     */
+    public float[] corners(){
+        final float[] axes = this.axes;
+        final float[] extents = this.extents;
+        final float[] re = new float[24];
+        for (int cc = 0, o = 0; cc < 8; cc++, o += 3){
+            final float su = (0 == (cc & 1))?(-extents[0]):(extents[0]);
+            final float sv = (0 == (cc & 2))?(-extents[1]):(extents[1]);
+            final float sw = (0 == (cc & 4))?(-extents[2]):(extents[2]);
+            re[o+X] = this.centerX + (su * axes[X]) + (sv * axes[3+X]) + (sw * axes[6+X]);
+            re[o+Y] = this.centerY + (su * axes[Y]) + (sv * axes[3+Y]) + (sw * axes[6+Y]);
+            re[o+Z] = this.centerZ + (su * axes[Z]) + (sv * axes[3+Z]) + (sw * axes[6+Z]);
+        }
+        return re;
+    }
+    /**
+     * @return Bounding sphere of the box
+     */
+    public float getRadius(){
+        final float[] e = this.extents;
+        return (float)Math.sqrt((e[0] * e[0]) + (e[1] * e[1]) + (e[2] * e[2]));
+    }
+    public float getBoundsMinX(){
+        return this.minX;
+    }
+    public float getBoundsMidX(){
+        return this.centerX;
+    }
+    public float getBoundsMaxX(){
+        return this.maxX;
+    }
+    public float getBoundsMinY(){
+        return this.minY;
+    }
+    public float getBoundsMidY(){
+        return this.centerY;
+    }
+    public float getBoundsMaxY(){
+        return this.maxY;
+    }
+    public float getBoundsMinZ(){
+        return this.minZ;
+    }
+    public float getBoundsMidZ(){
+        return this.centerZ;
+    }
+    public float getBoundsMaxZ(){
+        return this.maxZ;
+    }
+    public String toString(){
+        return String.format("center (%g, %g, %g) extents (%g, %g, %g)",this.centerX,this.centerY,this.centerZ,
+                             this.extents[0],this.extents[1],this.extents[2]);
+    }
+
+
+    /**
+     * Cyclic Jacobi eigen decomposition of a symmetric 3x3 matrix.
+     * @param a Row major matrix, destroyed
+     * @param v Row major eigenvectors in columns
+     */
+    private final static void Jacobi(double[] a, double[] v){
+        java.util.Arrays.fill(v,0.0);
+        v[0] = 1.0;
+        v[4] = 1.0;
+        v[8] = 1.0;
+        for (int sweep = 0; sweep < 32; sweep++){
+            final double off = (Math.abs(a[1]) + Math.abs(a[2]) + Math.abs(a[5]));
+            if (0.0 == off)
+                return;
+            else {
+                for (int p = 0; p < 2; p++){
+                    for (int q = (p + 1); q < 3; q++){
+                        final double apq = a[(3 * p) + q];
+                        if (0.0 != apq){
+                            final double app = a[(3 * p) + p], aqq = a[(3 * q) + q];
+                            final double theta = ((aqq - app) / (2.0 * apq));
+                            final double t = (Math.signum(theta) + ((0.0 == theta)?(1.0):(0.0))) /
+                                (Math.abs(theta) + Math.sqrt((theta * theta) + 1.0));
+                            final double c = (1.0 / Math.sqrt((t * t) + 1.0));
+                            final double s = (t * c);
+                            /*
+                             * A' = J^T A J, V' = V J
+                             */
+                            for (int k = 0; k < 3; k++){
+                                final double akp = a[(3 * k) + p], akq = a[(3 * k) + q];
+                                a[(3 * k) + p] = ((c * akp) - (s * akq));
+                                a[(3 * k) + q] = ((s * akp) + (c * akq));
+                            }
+                            for (int k = 0; k < 3; k++){
+                                final double apk = a[(3 * p) + k], aqk = a[(3 * q) + k];
+                                a[(3 * p) + k] = ((c * apk) - (s * aqk));
+                                a[(3 * q) + k] = ((s * apk) + (c * aqk));
+                            }
+                            for (int k = 0; k < 3; k++){
+                                final double vkp = v[(3 * k) + p], vkq = v[(3 * k) + q];
+                                v[(3 * k) + p] = ((c * vkp) - (s * vkq));
+                                v[(3 * k) + q] = ((s * vkp) + (c * vkq));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
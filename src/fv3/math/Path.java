@@ -34,6 +34,16 @@ import path.Winding;
  * not applicable to GL, but is an intermediate value for conversions
  * to and from Path data lists. </p>
  *
+ * <h3>Operators</h3>
+ * 
+ * <p> The list of operators grows by doubling, with the index of the
+ * first vertex of each operator recorded as it is added, so that
+ * appending an operator and finding its operands are constant time.
+ * The scalar forms of {@link #moveTo(float,float) moveTo}, {@link
+ * #lineTo(float,float) lineTo}, {@link #quadTo(float,float,float,float)
+ * quadTo} and {@link #cubicTo(float,float,float,float,float,float)
+ * cubicTo} write their operands into the vertex list directly. </p>
+ *
  * <h3>GL data type conversions</h3>
  * 
  * <p> Data format conversions are defined here and in {@link
@@ -58,6 +68,12 @@ public class Path
     protected boolean closed;
 
     protected Op[] operators;
+    /**
+     * Index of the first vertex of each operator
+     */
+    protected int[] offsets;
+
+    protected int countOperators;
 
 
     public Path(){
@@ -95,7 +111,7 @@ public class Path
      */
     public Path setWinding(Winding winding){
         if (null != winding){
-            this.countVertices(0);
+            this.clear();
 
             this.winding = winding;
 
@@ -108,27 +124,45 @@ public class Path
     }
     public float[] getVerticesPath(int index, Op op, float[] vertices){
 
-        final int vx = IndexForVertices(this.operators,index);
-        if (-1 < vx)
-            return OperandsFromVertices(op,vertices,vx);
+        if (this.valid(index))
+            return OperandsFromVertices(op,vertices,(3 * this.offsets[index]));
         else
             return null;
     }
+    /**
+     * @return Number of operators
+     */
+    public int countOperators(){
+        return this.countOperators;
+    }
+    /**
+     * @param index Operator index
+     * @return Index of the first vertex of the operator, or negative
+     * one
+     */
+    public int offset(int index){
+        if (this.valid(index))
+            return this.offsets[index];
+        else
+            return -1;
+    }
     public Op op(int index){
-        Op[] operators = this.operators;
-        if (null == operators || 0 > index)
-            return null;
-        else if (index < operators.length)
-            return operators[index];
+        if (this.valid(index))
+            return this.operators[index];
         else
             return null;
     }
     public Op lop(){
-        Op[] operators = this.operators;
-        if (null == operators)
+        return this.op(this.countOperators-1);
+    }
+    /**
+     * @return Copy of the list of operators
+     */
+    public Op[] operators(){
+        if (null == this.operators)
             return null;
         else
-            return operators[operators.length-1];
+            return java.util.Arrays.copyOf(this.operators,this.countOperators);
     }
     /**
      * @param op Operator
@@ -136,7 +170,7 @@ public class Path
      */
     public void add(Op op, float[] operands){
 
-        this.operators = Op.Add(this.operators,op);
+        this.addOperator(op);
 
         this.addVerticesXY(operands);
 
@@ -147,6 +181,19 @@ public class Path
 
         this.clear();
     }
+    public Path clear(){
+        this.countOperators = 0;
+        super.clear();
+        return this;
+    }
+    public Path clone(){
+        Path clone = (Path)super.clone();
+        if (null != this.operators){
+            clone.operators = this.operators.clone();
+            clone.offsets = this.offsets.clone();
+        }
+        return clone;
+    }
     public void set(path.Path path){
         this.reset();
         this.add(path);
@@ -173,31 +220,21 @@ public class Path
         }
     }
     public int lindex(){
-        Op[] operators = this.operators;
-        if (null != operators)
-            return (operators.length-1); 
-        else
-            return -1;
+
+        return (this.countOperators-1);
     }
     public int lindexOf(Op op){
         Op[] operators = this.operators;
-        if (null != operators){
-            for (int lindex = (operators.length-1); lindex >= 0; lindex--){
+        for (int lindex = (this.countOperators-1); lindex >= 0; lindex--){
 
-                if (op == operators[lindex])
-                    return lindex;
-            }
+            if (op == operators[lindex])
+                return lindex;
         }
         return -1;
     }
     public boolean valid(int index){
-        Op[] operators = this.operators;
-        if (null == operators || 0 > index)
-            return false;
-        else if (index < operators.length)
-            return true;
-        else
-            return false;
+
+        return (-1 < index && index < this.countOperators);
     }
 
     public final void moveTo(float[] operands) {
@@ -207,9 +244,12 @@ public class Path
     public final void moveTo(float x, float y) {
         final int lindex = this.lindex();
         if (Op.MoveTo == this.op(lindex))
-            this.setVertex(lindex,x,y,0);
+            this.setVertex(this.offsets[lindex],x,y,0);
         else {
-            this.add(Op.MoveTo,new float[]{x,y});
+            final int o = this.addOperands(Op.MoveTo);
+            final float[] vertices = this.vertices;
+            vertices[o+X] = x;
+            vertices[o+Y] = y;
         }
     }
     public final void lineTo(float[] operands) {
@@ -218,7 +258,10 @@ public class Path
     }
     public final void lineTo(float x, float y) {
 
-        this.add(Op.LineTo,new float[]{x,y});
+        final int o = this.addOperands(Op.LineTo);
+        final float[] vertices = this.vertices;
+        vertices[o+X] = x;
+        vertices[o+Y] = y;
     }
     public void quadTo(float[] operands)
     {
@@ -236,8 +279,12 @@ public class Path
     public void quadTo(float x1, float y1,
                        float x2, float y2)
     {
-
-        this.add(Op.QuadTo,new float[]{x1,y1,0,x2,y2,0});
+        final int o = this.addOperands(Op.QuadTo);
+        final float[] vertices = this.vertices;
+        vertices[o+X] = x1;
+        vertices[o+Y] = y1;
+        vertices[o+3+X] = x2;
+        vertices[o+3+Y] = y2;
     }
     public void cubicTo(float[] operands)
     {
@@ -256,7 +303,14 @@ public class Path
                         float x2, float y2,
                         float x3, float y3)
     {
-        this.add(Op.CubicTo,new float[]{x1,y1,0,x2,y2,0,x3,y3,0});
+        final int o = this.addOperands(Op.CubicTo);
+        final float[] vertices = this.vertices;
+        vertices[o+X] = x1;
+        vertices[o+Y] = y1;
+        vertices[o+3+X] = x2;
+        vertices[o+3+Y] = y2;
+        vertices[o+6+X] = x3;
+        vertices[o+6+Y] = y3;
     }
     public final void close(){
         int lindex = lindexOf(Op.Close);
@@ -282,6 +336,22 @@ public class Path
         }
     }
 
+    /**
+     * @param e Maximum chord deviation
+     * @return Line segments of this path
+     * @see Flatten
+     */
+    public final VertexArray flatten(float e){
+        return Flatten.Lines(this,e);
+    }
+    /**
+     * @param e Maximum chord deviation
+     * @return Triangles filling this path by its winding rule
+     * @see Tessellate
+     */
+    public final VertexArray tessellate(float e){
+        return Tessellate.Triangles(this,e);
+    }
     public final Path apply(String pexpr){
         return this.apply(new path.Parser(pexpr));
     }
@@ -289,10 +359,39 @@ public class Path
         return path.Parser.Apply(this,p);
     }
     public java.lang.Iterable<Operand> toPathIterable(){
-        return new path.Iterator(this,this.operators,this.vertices);
+        return new path.Iterator(this,this.operators(),this.vertices);
     }
     public java.util.Iterator<Operand> toPathIterator(){
-        return new path.Iterator(this,this.operators,this.vertices);
+        return new path.Iterator(this,this.operators(),this.vertices);
+    }
+    /**
+     * Append an operator and extend the vertex list by its operands.
+     * @return Offset into the vertex list for the operands
+     */
+    private int addOperands(Op op){
+
+        this.addOperator(op);
+
+        return this.extendVertices(op.operands);
+    }
+    /**
+     * Append an operator at the end of the vertex list.
+     */
+    private void addOperator(Op op){
+        final int index = this.countOperators;
+        Op[] operators = this.operators;
+        if (null == operators){
+            this.operators = operators = new Op[16];
+            this.offsets = new int[16];
+        }
+        else if (index == operators.length){
+            final int length = (index << 1);
+            this.operators = operators = java.util.Arrays.copyOf(operators,length);
+            this.offsets = java.util.Arrays.copyOf(this.offsets,length);
+        }
+        operators[index] = op;
+        this.offsets[index] = this.countVertices;
+        this.countOperators = (index + 1);
     }
     public String toString(){
         return Formatter.ToString(this);
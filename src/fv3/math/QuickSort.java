@@ -23,7 +23,15 @@ package fv3.math;
  * rotational order.
  * 
  * Rotational order in two dimensions sorts coordinates in quadrants
- * as Q1 &lt; Q2 &lt; Q3 &lt; Q4.
+ * as Q1 &lt; Q2 &lt; Q3 &lt; Q4, around the origin or a center.  The
+ * center itself precedes all other coordinates.
+ * 
+ * The order is computed without trigonometry: by quadrant, and then
+ * by the sign of the cross product within a quadrant ({@link
+ * #Compare}).  The sort is an in place quick sort over the vertex
+ * list.  Lists of {@link #RadixCount} or more vertices are sorted by
+ * a radix sort of {@link #PseudoAngle} keys ({@link #Radix}), which
+ * is monotonic with the angle to float precision.
  * 
  * The independent axis is one of X, Y or Z not in the two dimensional
  * sort.  It is the excluded dimension.
@@ -54,118 +62,289 @@ public final class QuickSort
     implements fv3.math.Notation
 {
     /**
-     * @param m Domain coordinate
-     * @param n Range coordinate
+     * Number of vertices from which the constructor employs the
+     * radix sort
      */
-    private final static float M(float m, float n){
-        return (float)Math.atan(n/m);
-    }
-    private final static float MX = Short.MAX_VALUE;
-    private final static int Index(float[] vertices, int ofs, int fix){
+    public final static int RadixCount = 2048;
+    /**
+     * Lists of fewer vertices are insertion sorted
+     */
+    private final static int InsertionCount = 12;
 
-        float x = vertices[ofs+X];
-        float y = vertices[ofs+Y];
-        float z = vertices[ofs+Z];
 
+    /**
+     * @param u Domain coordinate relative to the center
+     * @param v Range coordinate relative to the center
+     * @return Quadrant from zero to three, or negative one for the
+     * center
+     */
+    public final static int Quadrant(float u, float v){
+        if (0.0f < u){
+            if (0.0f <= v)
+                return 0;
+            else
+                return 3;
+        }
+        else if (0.0f > u){
+            if (0.0f >= v)
+                return 2;
+            else
+                return 1;
+        }
+        else if (0.0f < v)
+            return 1;
+        else if (0.0f > v)
+            return 3;
+        else
+            return -1;
+    }
+    /**
+     * Rotational order of two coordinates relative to the center.
+     * @return Negative, zero or positive for the first coordinate
+     * preceding, at the same angle as, or following the second
+     */
+    public final static int Compare(float u0, float v0, float u1, float v1){
+        final int q0 = Quadrant(u0,v0), q1 = Quadrant(u1,v1);
+        if (q0 != q1)
+            return (q0 - q1);
+        else {
+            final float cross = ((u0 * v1) - (v0 * u1));
+            if (0.0f < cross)
+                return -1;
+            else if (0.0f > cross)
+                return 1;
+            else
+                return 0;
+        }
+    }
+    /**
+     * Diamond angle, a substitute for <code>atan2(v,u)</code> over
+     * <i>[0,2PI)</i> for ordering.
+     * @param u Domain coordinate relative to the center
+     * @param v Range coordinate relative to the center
+     * @return Value in <i>[0,4)</i> increasing with the angle, or
+     * negative one for the center
+     */
+    public final static float PseudoAngle(float u, float v){
+        switch(Quadrant(u,v)){
+        case 0:
+            return (v / (u + v));
+        case 1:
+            return 1.0f + (-u / (v - u));
+        case 2:
+            return 2.0f + (-v / (-u - v));
+        case 3:
+            return 3.0f + (u / (u - v));
+        default:
+            return -1.0f;
+        }
+    }
+    /**
+     * In place quick sort of a vertex list for rotational order.
+     * @param vertices Vertex list in (X,Y,Z)+
+     * @param fix Fixed or independent dimension
+     * @param cu Domain coordinate of the center
+     * @param cv Range coordinate of the center
+     */
+    public final static float[] Sort(float[] vertices, int fix, float cu, float cv){
+        final int count = (vertices.length / 3);
+        if (1 < count){
+            final int du = Domain(fix), dv = Range(fix);
+            Sort(vertices,du,dv,cu,cv,0,(count - 1));
+        }
+        return vertices;
+    }
+    /**
+     * Radix sort of a vertex list for rotational order by {@link
+     * #PseudoAngle}.
+     * @param vertices Vertex list in (X,Y,Z)+
+     * @param fix Fixed or independent dimension
+     * @param cu Domain coordinate of the center
+     * @param cv Range coordinate of the center
+     */
+    public final static float[] Radix(float[] vertices, int fix, float cu, float cv){
+        final int count = (vertices.length / 3);
+        if (1 < count){
+            final int du = Domain(fix), dv = Range(fix);
+            /*
+             * Non negative float keys order as their bits
+             */
+            int[] keys = new int[count];
+            int[] order = new int[count];
+            for (int cc = 0, vo = 0; cc < count; cc++, vo += 3){
+                final float a = PseudoAngle((vertices[vo+du] - cu),(vertices[vo+dv] - cv));
+                keys[cc] = ((0.0f > a)?(0):(Float.floatToIntBits(a) + 1));
+                order[cc] = cc;
+            }
+            int[] keys2 = new int[count];
+            int[] order2 = new int[count];
+            final int[] histogram = new int[256];
+            for (int shift = 0; shift < 32; shift += 8){
+                java.util.Arrays.fill(histogram,0);
+                for (int cc = 0; cc < count; cc++)
+                    histogram[(keys[cc] >>> shift) & 0xff] += 1;
+
+                if (count == histogram[(keys[0] >>> shift) & 0xff])
+                    continue;
+                else {
+                    for (int b = 0, sum = 0; b < 256; b++){
+                        final int h = histogram[b];
+                        histogram[b] = sum;
+                        sum += h;
+                    }
+                    for (int cc = 0; cc < count; cc++){
+                        final int d = histogram[(keys[cc] >>> shift) & 0xff]++;
+                        keys2[d] = keys[cc];
+                        order2[d] = order[cc];
+                    }
+                    int[] swap = keys;
+                    keys = keys2;
+                    keys2 = swap;
+                    swap = order;
+                    order = order2;
+                    order2 = swap;
+                }
+            }
+            final float[] src = vertices.clone();
+            for (int cc = 0, vo = 0; cc < count; cc++, vo += 3){
+                final int so = (3 * order[cc]);
+                vertices[vo+X] = src[so+X];
+                vertices[vo+Y] = src[so+Y];
+                vertices[vo+Z] = src[so+Z];
+            }
+        }
+        return vertices;
+    }
+    /**
+     * @return Offset of the domain coordinate in a vertex
+     */
+    private final static int Domain(int fix){
         switch (fix){
         case X:
-            return (int)(MX*M(z,y));
+            return Z;
         case Y:
-            return (int)(MX*M(x,z));
         case Z:
-            return (int)(MX*M(x,y));
-
+            return X;
         default:
             throw new IllegalArgumentException(String.valueOf(fix));
         }
     }
-    private final static int Mod3 = (Integer.MAX_VALUE-3);
+    /**
+     * @return Offset of the range coordinate in a vertex
+     */
+    private final static int Range(int fix){
+        switch (fix){
+        case X:
+        case Z:
+            return Y;
+        case Y:
+            return Z;
+        default:
+            throw new IllegalArgumentException(String.valueOf(fix));
+        }
+    }
+    /**
+     * @param left Index of the first vertex
+     * @param right Index of the last vertex
+     */
+    private final static void Sort(float[] v, int du, int dv, float cu, float cv, int left, int right){
+
+        while (InsertionCount < (right - left)){
+            /*
+             * Median of three pivot
+             */
+            final int mid = ((left + right) >>> 1);
+            if (0 < Compare(v,du,dv,cu,cv,left,mid))
+                Swap(v,left,mid);
+            if (0 < Compare(v,du,dv,cu,cv,mid,right))
+                Swap(v,mid,right);
+            if (0 < Compare(v,du,dv,cu,cv,left,mid))
+                Swap(v,left,mid);
+
+            final float pu = (v[(3 * mid) + du] - cu), pv = (v[(3 * mid) + dv] - cv);
+
+            int i = left, j = right;
+            while (i <= j){
+                while (0 > Compare((v[(3 * i) + du] - cu),(v[(3 * i) + dv] - cv),pu,pv))
+                    i += 1;
+                while (0 < Compare((v[(3 * j) + du] - cu),(v[(3 * j) + dv] - cv),pu,pv))
+                    j -= 1;
+                if (i <= j){
+                    Swap(v,i,j);
+                    i += 1;
+                    j -= 1;
+                }
+            }
+            /*
+             * Recurse into the lesser part
+             */
+            if ((j - left) < (right - i)){
+                if (left < j)
+                    Sort(v,du,dv,cu,cv,left,j);
+                left = i;
+            }
+            else {
+                if (i < right)
+                    Sort(v,du,dv,cu,cv,i,right);
+                right = j;
+            }
+        }
+        for (int i = (left + 1); i <= right; i++){
+            for (int j = i; j > left && 0 < Compare(v,du,dv,cu,cv,(j - 1),j); j--)
+                Swap(v,(j - 1),j);
+        }
+    }
+    private final static int Compare(float[] v, int du, int dv, float cu, float cv, int a, int b){
+        final int ao = (3 * a), bo = (3 * b);
+        return Compare((v[ao+du] - cu),(v[ao+dv] - cv),(v[bo+du] - cu),(v[bo+dv] - cv));
+    }
+    private final static void Swap(float[] v, int a, int b){
+        final int ao = (3 * a), bo = (3 * b);
+        float t = v[ao+X];
+        v[ao+X] = v[bo+X];
+        v[bo+X] = t;
+        t = v[ao+Y];
+        v[ao+Y] = v[bo+Y];
+        v[bo+Y] = t;
+        t = v[ao+Z];
+        v[ao+Z] = v[bo+Z];
+        v[bo+Z] = t;
+    }
 
 
     public final float[] vertices;
 
     public final int fix;
 
-    private final int[] index;
-
 
     /**
-     * Sort vertices on any two dimensions for rotational order.
+     * Sort vertices on any two dimensions for rotational order
+     * around the origin.
      * 
      * @param vertices Vertex list in (X,Y,Z)+
      * @param fix Fixed or independent dimension from {@link fv3.math.Notation} 
      */
     public QuickSort(float[] vertices, int fix){
+        this(vertices,fix,0.0f,0.0f);
+    }
+    /**
+     * Sort vertices on any two dimensions for rotational order
+     * around a center.
+     * 
+     * @param vertices Vertex list in (X,Y,Z)+
+     * @param fix Fixed or independent dimension from {@link fv3.math.Notation} 
+     * @param cu Domain coordinate of the center
+     * @param cv Range coordinate of the center
+     */
+    public QuickSort(float[] vertices, int fix, float cu, float cv){
         super();
         this.vertices = vertices;
         this.fix = fix;
 
-        final int len = vertices.length;
-        final int vc = (len/3);
-        {
-            int[] index = new int[vc];
-            for (int cc = 0; cc < vc; cc++){
-
-                index[cc] = Index(vertices,(cc*3),fix);
-            }
-            this.index = index;
-        }
-
-        this.sort(0,(len-3));
-    }
-
-
-    private int select(int left, int right){
-        final int xl = (left/3);
-        final int xr = (right/3);
-        final int xd = (xr-xl);
-        if (2 > xd)
-            return this.index[xl];
-        else {
-            int[] select = new int[xd];
-            System.arraycopy(this.index,left,select,0,xd);
-            java.util.Arrays.sort(select);
-            return select[xd>>1];
-        }
-    }
-    private int index(int index){
-        return this.index[ index / 3 ];
-    }
-    private void sort(int left, int right){
-
-        int i = left, j = right;
-
-        float[] tmp = new float[3];
-
-        float pivot = this.select(left,right);
-
-        while (i <= j) {
-
-            while (this.index(i) < pivot)
-
-                i += 3;
-
-            while (this.index(j) > pivot)
-
-                j -= 3;
-
-            if (i <= j) {
-
-                System.arraycopy(vertices,i,tmp,0,3);      // tmp = i;
-                System.arraycopy(vertices,j,vertices,i,3); // i = j;
-                System.arraycopy(tmp,0,vertices,j,3);      // j = tmp;
-
-                i += 3;
-                j -= 3;
-            }
-        }
-
-        if (left < j)
-
-            this.sort(left, j);
-
-        if (i < right)
+        if (RadixCount <= (vertices.length/3))
 
-            this.sort(i, right);
+            Radix(vertices,fix,cu,cv);
+        else
+            Sort(vertices,fix,cu,cv);
     }
 }
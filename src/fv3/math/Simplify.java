@@ -0,0 +1,729 @@
+/*
+ * fv3.math
+ * Copyright (C) 2012, John Pritchard, all rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fv3.math;
+
+/**
+ * Quadric error metric edge collapse simplification of an indexed
+ * triangle list, after Garland and Heckbert.
+ *
+ * <p> Each vertex accumulates the quadric of the planes of its
+ * triangles, and each edge is queued in a binary heap by the quadric
+ * error of its optimal collapse position.  The least edge is
+ * collapsed until the target number of triangles is reached, or
+ * until the least error exceeds the error bound.  Queue entries
+ * invalidated by a collapse are discarded as they reach the head of
+ * the heap. </p>
+ *
+ * <p> Boundary vertices, on an edge having one triangle, are fixed:
+ * an interior vertex may collapse onto a boundary vertex, and an
+ * edge between boundary vertices is not collapsed.  As {@link
+ * IndexedVertexArray#weld(float,boolean) welding} with matching
+ * normals leaves creases open, creases are preserved as boundaries.
+ * Collapses that would fold a triangle over or leave it a sliver, or
+ * join the surface into a non manifold, are rejected. </p>
+ *
+ * <p> The {@link #LOD} chain is a list of successively simplified
+ * copies for selection at runtime by distance or screen size. </p>
+ *
+ * @see IndexedVertexArray
+ * @author jdp
+ */
+public class Simplify
+    extends Abstract
+{
+    /**
+     * Least cosine of the angle between the normals of a triangle
+     * before and after a collapse
+     */
+    public final static float FoldCosine = 0.2f;
+    /**
+     * Least ratio of the area of a triangle after a collapse to its
+     * area before
+     */
+    public final static float FoldArea = 0.1f;
+
+    /**
+     * Number of source triangles
+     */
+    public final int countTriangles;
+    /**
+     * Number of edges collapsed
+     */
+    public final int countCollapses;
+    /**
+     * Greatest error of a collapse, as a distance
+     */
+    public final float error;
+
+    private final IndexedVertexArray result;
+
+
+    /**
+     * @param src Indexed triangle list, welded to discover shared
+     * edges
+     * @param target Number of triangles
+     */
+    public Simplify(IndexedVertexArray src, int target){
+        this(src,target,Float.MAX_VALUE);
+    }
+    /**
+     * @param src Indexed triangle list, welded to discover shared
+     * edges
+     * @param target Number of triangles
+     * @param error Error bound as a distance from the source surface
+     */
+    public Simplify(IndexedVertexArray src, int target, float error){
+        super();
+        if (null == src)
+            throw new IllegalArgumentException();
+        else if (VertexArray.Type.Triangles != src.type)
+            throw new IllegalArgumentException(src.type.name());
+        else {
+            final int countT = (src.countIndeces / 3);
+            final int countV = src.countVertices;
+
+            this.countTriangles = countT;
+
+            final float[] vertices = java.util.Arrays.copyOf(src.vertices,(3 * countV));
+            final int[] triangles = java.util.Arrays.copyOf(src.indeces,(3 * countT));
+            final boolean[] removedT = new boolean[countT];
+            final boolean[] removedV = new boolean[countV];
+            final int[] version = new int[countV];
+            /*
+             * Drop degenerate triangles, as at the poles of a welded
+             * sphere
+             */
+            int alive = countT;
+            for (int t = 0, o = 0; t < countT; t++, o += 3){
+                final int a = triangles[o], b = triangles[o+1], c = triangles[o+2];
+                if (a == b || b == c || c == a){
+                    removedT[t] = true;
+                    alive -= 1;
+                }
+            }
+            /*
+             * Triangles of each vertex
+             */
+            final int[][] adjacent = new int[countV][];
+            final int[] countA = new int[countV];
+            for (int cc = 0, end = (3 * countT); cc < end; cc++){
+                if (!removedT[cc / 3])
+                    countA[triangles[cc]] += 1;
+            }
+            for (int v = 0; v < countV; v++){
+                adjacent[v] = new int[Math.max(4,countA[v])];
+                countA[v] = 0;
+            }
+            for (int cc = 0, end = (3 * countT); cc < end; cc++){
+                if (!removedT[cc / 3]){
+                    final int v = triangles[cc];
+                    adjacent[v][countA[v]++] = (cc / 3);
+                }
+            }
+            /*
+             * Vertex quadrics from triangle planes
+             */
+            final double[] quadrics = new double[10 * countV];
+            for (int t = 0; t < countT; t++){
+                if (removedT[t])
+                    continue;
+                final int o = (3 * t);
+                final double[] plane = Plane(vertices,triangles[o],triangles[o+1],triangles[o+2]);
+                if (null != plane){
+                    for (int k = 0; k < 3; k++)
+                        AddPlane(quadrics,(10 * triangles[o+k]),plane);
+                }
+            }
+            /*
+             * Unique edges, and boundary vertices on edges having one
+             * triangle
+             */
+            final long[] edges = new long[3 * alive];
+            for (int t = 0, o = 0, e = 0; t < countT; t++, o += 3){
+                if (!removedT[t]){
+                    edges[e++] = Edge(triangles[o],triangles[o+1]);
+                    edges[e++] = Edge(triangles[o+1],triangles[o+2]);
+                    edges[e++] = Edge(triangles[o+2],triangles[o]);
+                }
+            }
+            java.util.Arrays.sort(edges);
+
+            final boolean[] boundary = new boolean[countV];
+            final Heap heap = new Heap(countT * 2);
+            final double[] quadric = new double[10];
+            final double[] position = new double[3];
+
+            for (int cc = 0, end = edges.length; cc < end; ){
+                final long edge = edges[cc];
+                int run = 1;
+                while ((cc + run) < end && edge == edges[cc + run])
+                    run++;
+                if (1 == run){
+                    boundary[(int)(edge >>> 32)] = true;
+                    boundary[(int)edge] = true;
+                }
+                cc += run;
+            }
+            for (int cc = 0, end = edges.length; cc < end; cc++){
+                final long edge = edges[cc];
+                if (0 == cc || edge != edges[cc-1]){
+                    final int a = (int)(edge >>> 32);
+                    final int b = (int)edge;
+                    Queue(heap,quadrics,vertices,boundary,version,a,b,quadric,position);
+                }
+            }
+            /*
+             * Collapse
+             */
+            final double bound = ((double)error * (double)error);
+            final int[] mark = new int[countV];
+            int stamp = 0;
+            int collapses = 0;
+            double greatest = 0.0;
+
+            while (alive > target && 0 < heap.size){
+
+                final int entry = heap.pop();
+                final int v0 = heap.v0[entry];
+                final int v1 = heap.v1[entry];
+
+                if (removedV[v0] || removedV[v1] ||
+                    heap.version0[entry] != version[v0] ||
+                    heap.version1[entry] != version[v1])
+                {
+                    continue;
+                }
+                else if (heap.cost[entry] > bound)
+                    break;
+                else {
+                    final float px = (float)heap.x[entry];
+                    final float py = (float)heap.y[entry];
+                    final float pz = (float)heap.z[entry];
+                    /*
+                     * Link condition: the common neighbors of the
+                     * edge are the opposite corners of its triangles
+                     */
+                    stamp += 1;
+                    int shared = 0;
+                    for (int j = 0, jn = countA[v0]; j < jn; j++){
+                        final int o = (3 * adjacent[v0][j]);
+                        boolean edgeTriangle = false;
+                        for (int k = 0; k < 3; k++){
+                            if (v1 == triangles[o+k])
+                                edgeTriangle = true;
+                        }
+                        if (edgeTriangle)
+                            shared += 1;
+                        for (int k = 0; k < 3; k++){
+                            final int n = triangles[o+k];
+                            if (n != v0 && n != v1)
+                                mark[n] = stamp;
+                        }
+                    }
+                    int common = 0;
+                    stamp += 1;
+                    for (int j = 0, jn = countA[v1]; j < jn; j++){
+                        final int o = (3 * adjacent[v1][j]);
+                        for (int k = 0; k < 3; k++){
+                            final int n = triangles[o+k];
+                            if (n != v0 && n != v1 && (stamp - 1) == mark[n]){
+                                mark[n] = stamp;
+                                common += 1;
+                            }
+                        }
+                    }
+                    if (common != shared)
+                        continue;
+                    else if (Folds(vertices,triangles,adjacent[v0],countA[v0],v0,v1,px,py,pz) ||
+                             Folds(vertices,triangles,adjacent[v1],countA[v1],v1,v0,px,py,pz))
+                    {
+                        continue;
+                    }
+                    /*
+                     * Collapse (v1) into (v0)
+                     */
+                    final int o0 = (3 * v0);
+                    vertices[o0+X] = px;
+                    vertices[o0+Y] = py;
+                    vertices[o0+Z] = pz;
+                    for (int k = 0, q0 = (10 * v0), q1 = (10 * v1); k < 10; k++)
+                        quadrics[q0+k] += quadrics[q1+k];
+
+                    boundary[v0] = (boundary[v0] || boundary[v1]);
+                    removedV[v1] = true;
+                    version[v0] += 1;
+
+                    for (int j = 0, jn = countA[v1]; j < jn; j++){
+                        final int t = adjacent[v1][j];
+                        final int o = (3 * t);
+                        if (v0 == triangles[o] || v0 == triangles[o+1] || v0 == triangles[o+2]){
+                            /*
+                             * Triangle of the edge
+                             */
+                            removedT[t] = true;
+                            alive -= 1;
+                            for (int k = 0; k < 3; k++){
+                                final int n = triangles[o+k];
+                                if (n != v1)
+                                    Remove(adjacent[n],countA,n,t);
+                            }
+                        }
+                        else {
+                            for (int k = 0; k < 3; k++){
+                                if (v1 == triangles[o+k])
+                                    triangles[o+k] = v0;
+                            }
+                            int[] list = adjacent[v0];
+                            if (countA[v0] == list.length)
+                                adjacent[v0] = list = java.util.Arrays.copyOf(list,(list.length << 1));
+                            list[countA[v0]++] = t;
+                        }
+                    }
+                    countA[v1] = 0;
+                    /*
+                     * Requeue the edges of (v0)
+                     */
+                    stamp += 1;
+                    for (int j = 0, jn = countA[v0]; j < jn; j++){
+                        final int o = (3 * adjacent[v0][j]);
+                        for (int k = 0; k < 3; k++){
+                            final int n = triangles[o+k];
+                            if (n != v0 && stamp != mark[n]){
+                                mark[n] = stamp;
+                                Queue(heap,quadrics,vertices,boundary,version,v0,n,quadric,position);
+                            }
+                        }
+                    }
+                    greatest = Math.max(greatest,heap.cost[entry]);
+                    collapses += 1;
+                }
+            }
+            this.countCollapses = collapses;
+            this.error = (float)Math.sqrt(Math.max(0.0,greatest));
+            this.result = Compact(src,vertices,triangles,removedT,alive);
+        }
+    }
+
+
+    /**
+     * @return Simplified indexed triangle list having smooth normals
+     * when the source has normals
+     */
+    public final IndexedVertexArray toIndexedVertexArray(){
+        return this.result;
+    }
+    public final VertexArray toVertexArray(){
+        return this.result.toVertexArray();
+    }
+    public String toString(){
+        return String.format("triangles %d to %d, collapses %d, error %f",this.countTriangles,this.result.countFaces(),this.countCollapses,this.error);
+    }
+
+
+    /**
+     * Level of detail chain.
+     * @param src Indexed triangle list, welded to discover shared
+     * edges
+     * @param levels Greatest number of levels including the source
+     * @param ratio Number of triangles of each level relative to its
+     * predecessor, between zero and one
+     * @param error Error bound of each level as a distance from its
+     * predecessor
+     * @return From the source at index zero to the least detail,
+     * ending early when a level is not reduced
+     */
+    public final static IndexedVertexArray[] LOD(IndexedVertexArray src, int levels, float ratio, float error){
+        if (null == src || 1 > levels || !(ZERO < ratio && 1.0f > ratio))
+            throw new IllegalArgumentException();
+        else {
+            IndexedVertexArray[] re = new IndexedVertexArray[levels];
+            re[0] = src;
+            int count = 1;
+            while (count < levels){
+                final IndexedVertexArray prev = re[count-1];
+                final int triangles = prev.countFaces();
+                final Simplify level = new Simplify(prev,(int)(triangles * ratio),error);
+                final IndexedVertexArray next = level.toIndexedVertexArray();
+                if (next.countFaces() < triangles)
+                    re[count++] = next;
+                else
+                    break;
+            }
+            if (count < levels)
+                return java.util.Arrays.copyOf(re,count);
+            else
+                return re;
+        }
+    }
+
+
+    /**
+     * Binary heap of collapse candidates by cost.
+     */
+    private final static class Heap
+        extends java.lang.Object
+    {
+        int[] v0, v1, version0, version1;
+        double[] cost, x, y, z;
+        int count;
+        /**
+         * Heap of entry indeces
+         */
+        int[] heap;
+        int size;
+
+
+        Heap(int capacity){
+            super();
+            capacity = Math.max(16,capacity);
+            this.v0 = new int[capacity];
+            this.v1 = new int[capacity];
+            this.version0 = new int[capacity];
+            this.version1 = new int[capacity];
+            this.cost = new double[capacity];
+            this.x = new double[capacity];
+            this.y = new double[capacity];
+            this.z = new double[capacity];
+            this.heap = new int[capacity];
+        }
+
+
+        void push(int a, int b, int va, int vb, double c, double px, double py, double pz){
+            int entry = this.count;
+            if (entry == this.v0.length){
+                final int length = (entry << 1);
+                this.v0 = java.util.Arrays.copyOf(this.v0,length);
+                this.v1 = java.util.Arrays.copyOf(this.v1,length);
+                this.version0 = java.util.Arrays.copyOf(this.version0,length);
+                this.version1 = java.util.Arrays.copyOf(this.version1,length);
+                this.cost = java.util.Arrays.copyOf(this.cost,length);
+                this.x = java.util.Arrays.copyOf(this.x,length);
+                this.y = java.util.Arrays.copyOf(this.y,length);
+                this.z = java.util.Arrays.copyOf(this.z,length);
+            }
+            this.v0[entry] = a;
+            this.v1[entry] = b;
+            this.version0[entry] = va;
+            this.version1[entry] = vb;
+            this.cost[entry] = c;
+            this.x[entry] = px;
+            this.y[entry] = py;
+            this.z[entry] = pz;
+            this.count = (entry + 1);
+
+            if (this.size == this.heap.length)
+                this.heap = java.util.Arrays.copyOf(this.heap,(this.size << 1));
+
+            final int[] heap = this.heap;
+            final double[] cost = this.cost;
+            int i = this.size++;
+            while (0 < i){
+                final int parent = ((i - 1) >> 1);
+                if (cost[heap[parent]] <= c)
+                    break;
+                else {
+                    heap[i] = heap[parent];
+                    i = parent;
+                }
+            }
+            heap[i] = entry;
+        }
+        int pop(){
+            final int[] heap = this.heap;
+            final double[] cost = this.cost;
+            final int re = heap[0];
+            final int size = (this.size - 1);
+            this.size = size;
+            if (0 < size){
+                final int last = heap[size];
+                final double c = cost[last];
+                int i = 0;
+                while (true){
+                    int child = ((i << 1) + 1);
+                    if (child >= size)
+                        break;
+                    else if ((child + 1) < size && cost[heap[child+1]] < cost[heap[child]])
+                        child += 1;
+
+                    if (c <= cost[heap[child]])
+                        break;
+                    else {
+                        heap[i] = heap[child];
+                        i = child;
+                    }
+                }
+                heap[i] = last;
+            }
+            return re;
+        }
+    }
+
+
+    /**
+     * Queue the collapse of an edge at its least cost position.
+     * Boundary vertices are fixed.
+     */
+    private final static void Queue(Heap heap, double[] quadrics, float[] vertices, boolean[] boundary,
+                                    int[] version, int a, int b, double[] q, double[] p)
+    {
+        final boolean ba = boundary[a];
+        final boolean bb = boundary[b];
+        if (ba && bb)
+            return;
+        else {
+            for (int k = 0, qa = (10 * a), qb = (10 * b); k < 10; k++)
+                q[k] = (quadrics[qa+k] + quadrics[qb+k]);
+
+            int into = a, from = b;
+            if (ba){
+                Position(vertices,a,p);
+            }
+            else if (bb){
+                Position(vertices,b,p);
+                into = b;
+                from = a;
+            }
+            else if (!Optimal(q,p)){
+                /*
+                 * Least of the end points and the mid point
+                 */
+                final int oa = (3 * a), ob = (3 * b);
+                double best = Double.MAX_VALUE;
+                for (int k = 0; k < 3; k++){
+                    final double s = (0.5 * k);
+                    final double x = vertices[oa+X] + s * (vertices[ob+X] - vertices[oa+X]);
+                    final double y = vertices[oa+Y] + s * (vertices[ob+Y] - vertices[oa+Y]);
+                    final double z = vertices[oa+Z] + s * (vertices[ob+Z] - vertices[oa+Z]);
+                    final double c = Cost(q,x,y,z);
+                    if (c < best){
+                        best = c;
+                        p[0] = x;
+                        p[1] = y;
+                        p[2] = z;
+                    }
+                }
+            }
+            heap.push(into,from,version[into],version[from],Math.max(0.0,Cost(q,p[0],p[1],p[2])),p[0],p[1],p[2]);
+        }
+    }
+    private final static void Position(float[] vertices, int v, double[] p){
+        final int o = (3 * v);
+        p[0] = vertices[o+X];
+        p[1] = vertices[o+Y];
+        p[2] = vertices[o+Z];
+    }
+    /**
+     * Solve for the position minimizing the quadric.
+     * @return False for a singular quadric
+     */
+    private final static boolean Optimal(double[] q, double[] p){
+        final double a00 = q[0], a01 = q[1], a02 = q[2];
+        final double a11 = q[4], a12 = q[5], a22 = q[7];
+        final double b0 = -q[3], b1 = -q[6], b2 = -q[8];
+
+        final double c00 = (a11 * a22) - (a12 * a12);
+        final double c01 = (a02 * a12) - (a01 * a22);
+        final double c02 = (a01 * a12) - (a02 * a11);
+        final double det = (a00 * c00) + (a01 * c01) + (a02 * c02);
+
+        final double scale = Math.abs(a00) + Math.abs(a11) + Math.abs(a22);
+        if (Math.abs(det) <= (1e-9 * scale * scale * scale))
+            return false;
+        else {
+            final double c11 = (a00 * a22) - (a02 * a02);
+            final double c12 = (a01 * a02) - (a00 * a12);
+            final double c22 = (a00 * a11) - (a01 * a01);
+
+            p[0] = ((c00 * b0) + (c01 * b1) + (c02 * b2)) / det;
+            p[1] = ((c01 * b0) + (c11 * b1) + (c12 * b2)) / det;
+            p[2] = ((c02 * b0) + (c12 * b1) + (c22 * b2)) / det;
+            return true;
+        }
+    }
+    /**
+     * @return Sum of squared distances to the planes of the quadric
+     */
+    private final static double Cost(double[] q, double x, double y, double z){
+        return (q[0] * x * x) + (2.0 * q[1] * x * y) + (2.0 * q[2] * x * z) + (2.0 * q[3] * x)
+            + (q[4] * y * y) + (2.0 * q[5] * y * z) + (2.0 * q[6] * y)
+            + (q[7] * z * z) + (2.0 * q[8] * z)
+            + q[9];
+    }
+    /**
+     * @return Unit plane <i>(a,b,c,d)</i> of a triangle, or null for
+     * a degenerate triangle
+     */
+    private final static double[] Plane(float[] vertices, int a, int b, int c){
+        final int oa = (3 * a), ob = (3 * b), oc = (3 * c);
+        final double ux = vertices[ob+X] - vertices[oa+X];
+        final double uy = vertices[ob+Y] - vertices[oa+Y];
+        final double uz = vertices[ob+Z] - vertices[oa+Z];
+        final double vx = vertices[oc+X] - vertices[oa+X];
+        final double vy = vertices[oc+Y] - vertices[oa+Y];
+        final double vz = vertices[oc+Z] - vertices[oa+Z];
+        double nx = (uy * vz) - (uz * vy);
+        double ny = (uz * vx) - (ux * vz);
+        double nz = (ux * vy) - (uy * vx);
+        final double nl = Math.sqrt((nx * nx) + (ny * ny) + (nz * nz));
+        if (0.0 == nl)
+            return null;
+        else {
+            nx /= nl;
+            ny /= nl;
+            nz /= nl;
+            final double d = -((nx * vertices[oa+X]) + (ny * vertices[oa+Y]) + (nz * vertices[oa+Z]));
+            return new double[]{nx, ny, nz, d};
+        }
+    }
+    private final static void AddPlane(double[] q, int o, double[] p){
+        final double a = p[0], b = p[1], c = p[2], d = p[3];
+        q[o]   += a * a;
+        q[o+1] += a * b;
+        q[o+2] += a * c;
+        q[o+3] += a * d;
+        q[o+4] += b * b;
+        q[o+5] += b * c;
+        q[o+6] += b * d;
+        q[o+7] += c * c;
+        q[o+8] += c * d;
+        q[o+9] += d * d;
+    }
+    private final static long Edge(int a, int b){
+        if (a < b)
+            return (((long)a << 32) | (b & 0xffffffffL));
+        else
+            return (((long)b << 32) | (a & 0xffffffffL));
+    }
+    /**
+     * Remove a triangle from the list of a vertex.
+     */
+    private final static void Remove(int[] list, int[] countA, int v, int t){
+        final int last = (countA[v] - 1);
+        for (int j = 0; j <= last; j++){
+            if (t == list[j]){
+                list[j] = list[last];
+                countA[v] = last;
+                return;
+            }
+        }
+    }
+    /**
+     * @return Moving vertex (v) to <i>(px,py,pz)</i> would turn over
+     * or degenerate one of its triangles not shared with (u): its
+     * normal would turn by more than the arc cosine of {@link
+     * #FoldCosine}, or its area would fall to less than {@link
+     * #FoldArea} of its area
+     */
+    private final static boolean Folds(float[] vertices, int[] triangles, int[] list, int count, int v, int u,
+                                       float px, float py, float pz)
+    {
+        for (int j = 0; j < count; j++){
+            final int o = (3 * list[j]);
+            final int a = triangles[o], b = triangles[o+1], c = triangles[o+2];
+            if (u == a || u == b || u == c)
+                continue;
+            else {
+                final int k = ((v == a)?(0):((v == b)?(1):(2)));
+                final int o1 = (3 * triangles[o+((k+1)%3)]);
+                final int o2 = (3 * triangles[o+((k+2)%3)]);
+                final int ov = (3 * v);
+
+                final float e1x = vertices[o1+X], e1y = vertices[o1+Y], e1z = vertices[o1+Z];
+                final float e2x = vertices[o2+X], e2y = vertices[o2+Y], e2z = vertices[o2+Z];
+                /*
+                 * Normals before and after
+                 */
+                final float ax = e1x - vertices[ov+X], ay = e1y - vertices[ov+Y], az = e1z - vertices[ov+Z];
+                final float bx = e2x - vertices[ov+X], by = e2y - vertices[ov+Y], bz = e2z - vertices[ov+Z];
+                final float n0x = (ay * bz) - (az * by);
+                final float n0y = (az * bx) - (ax * bz);
+                final float n0z = (ax * by) - (ay * bx);
+
+                final float cx = e1x - px, cy = e1y - py, cz = e1z - pz;
+                final float dx = e2x - px, dy = e2y - py, dz = e2z - pz;
+                final float n1x = (cy * dz) - (cz * dy);
+                final float n1y = (cz * dx) - (cx * dz);
+                final float n1z = (cx * dy) - (cy * dx);
+
+                final float dot = (n0x * n1x) + (n0y * n1y) + (n0z * n1z);
+                final float len0 = (float)Math.sqrt((n0x * n0x) + (n0y * n0y) + (n0z * n0z));
+                final float len1 = (float)Math.sqrt((n1x * n1x) + (n1y * n1y) + (n1z * n1z));
+                if (dot <= (FoldCosine * len0 * len1) || len1 <= (FoldArea * len0))
+                    return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * Pool of the remaining vertices, and smooth normals when the
+     * source has normals.
+     */
+    private final static IndexedVertexArray Compact(IndexedVertexArray src, float[] vertices, int[] triangles,
+                                                    boolean[] removedT, int alive)
+    {
+        final int countV = (vertices.length / 3);
+        final int[] remap = new int[countV];
+        java.util.Arrays.fill(remap,-1);
+        final int[] indeces = new int[3 * alive];
+        int used = 0;
+        for (int t = 0, o = 0, io = 0, end = removedT.length; t < end; t++, o += 3){
+            if (!removedT[t]){
+                for (int k = 0; k < 3; k++){
+                    final int v = triangles[o+k];
+                    if (0 > remap[v])
+                        remap[v] = used++;
+                    indeces[io++] = remap[v];
+                }
+            }
+        }
+        final float[] reV = new float[3 * used];
+        for (int v = 0; v < countV; v++){
+            if (-1 < remap[v])
+                System.arraycopy(vertices,(3 * v),reV,(3 * remap[v]),3);
+        }
+        float[] reN = null;
+        if (null != src.normals){
+            reN = new float[3 * used];
+            for (int io = 0; io < indeces.length; io += 3){
+                final int a = (3 * indeces[io]), b = (3 * indeces[io+1]), c = (3 * indeces[io+2]);
+                final float ux = reV[b+X] - reV[a+X], uy = reV[b+Y] - reV[a+Y], uz = reV[b+Z] - reV[a+Z];
+                final float vx = reV[c+X] - reV[a+X], vy = reV[c+Y] - reV[a+Y], vz = reV[c+Z] - reV[a+Z];
+                final float nx = (uy * vz) - (uz * vy);
+                final float ny = (uz * vx) - (ux * vz);
+                final float nz = (ux * vy) - (uy * vx);
+                for (int k = 0; k < 3; k++){
+                    final int n = (3 * indeces[io+k]);
+                    reN[n+X] += nx;
+                    reN[n+Y] += ny;
+                    reN[n+Z] += nz;
+                }
+            }
+            for (int n = 0, end = reN.length; n < end; n += 3){
+                final float nx = reN[n+X], ny = reN[n+Y], nz = reN[n+Z];
+                final float nl = (float)Math.sqrt((nx * nx) + (ny * ny) + (nz * nz));
+                if (ZERO < nl){
+                    reN[n+X] = (nx / nl);
+                    reN[n+Y] = (ny / nl);
+                    reN[n+Z] = (nz / nl);
+                }
+            }
+        }
+        return new IndexedVertexArray(VertexArray.Type.Triangles,reV,reN,indeces);
+    }
+}
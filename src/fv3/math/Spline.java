@@ -25,6 +25,13 @@ package fv3.math;
  * Largely based on code from Kevin's Online Panel Code and Numerical
  * Recipes' Cubic Spline Interpolation.
  * 
+ * The spline is parametric in the arc length of the input points.
+ * Its setup is the linear time tridiagonal sweep of Numerical
+ * Recipes for each coordinate.  Evaluation over parameters in
+ * order, as by {@link #evaluate(float[],float[])} or a {@link
+ * Cursor}, steps from the segment of the previous parameter rather
+ * than searching the knots.
+ * 
  * @author John Pritchard
  */
 public class Spline
@@ -36,6 +43,55 @@ public class Spline
 
     private float ds, inX[], inY[], outX[], outY[], s1[], s2[], xp[], yp[];
 
+    /**
+     * Evaluation in a sequence of parameters.  A cursor retains the
+     * segment of its last parameter, so that parameters in
+     * increasing or decreasing order are evaluated in constant time.
+     */
+    public final class Cursor
+        extends Object
+    {
+        private int segment;
+
+
+        public Cursor(){
+            super();
+        }
+
+
+        /**
+         * @param s Arc length parameter
+         * @return X coordinate
+         */
+        public float x(float s){
+            final Spline p = Spline.this;
+            this.segment = Seek(p.s1,p.np,s,this.segment);
+            return Eval(p.s1,p.inX,p.xp,this.segment,s);
+        }
+        /**
+         * @param s Arc length parameter
+         * @return Y coordinate
+         */
+        public float y(float s){
+            final Spline p = Spline.this;
+            this.segment = Seek(p.s1,p.np,s,this.segment);
+            return Eval(p.s1,p.inY,p.yp,this.segment,s);
+        }
+        /**
+         * @param s Arc length parameter
+         * @param out Destination for <i>(X,Y)</i>
+         * @param ofs Offset into destination
+         */
+        public float[] evaluate(float s, float[] out, int ofs){
+            final Spline p = Spline.this;
+            final int k = Seek(p.s1,p.np,s,this.segment);
+            this.segment = k;
+            out[ofs]   = Eval(p.s1,p.inX,p.xp,k,s);
+            out[ofs+1] = Eval(p.s1,p.inY,p.yp,k,s);
+            return out;
+        }
+    }
+
 
     /**
      * @param n Plot output dimension in (X(n), Y(n))
@@ -53,7 +109,7 @@ public class Spline
      */
     public Spline(int n, float[] x, float[] y, boolean smooth){
         super();
-        if (0 < n && null != x && null != y && x.length == y.length){
+        if (1 < n && null != x && null != y && 1 < x.length && x.length == y.length){
             /*
              * Configure
              */
@@ -66,10 +122,10 @@ public class Spline
             /*
              * Initialize
              */
-            this.s1 = new float[this.s];
+            this.s1 = new float[Math.max(this.s,this.np)];
             this.s2 = new float[this.s];
-            this.xp = new float[this.s];
-            this.yp = new float[this.s];
+            this.xp = new float[this.np];
+            this.yp = new float[this.np];
             /*
              * Smooth Data
              */
@@ -89,21 +145,28 @@ public class Spline
             }
             /*
              */
-            Generate(this.s1,this.inX,this.np,this.xp);
-            Generate(this.s1,this.inY,this.np,this.yp);
+            {
+                final float[] u = new float[this.np];
+                Generate(this.s1,this.inX,this.np,this.xp,u);
+                Generate(this.s1,this.inY,this.np,this.yp,u);
+            }
             /*
              */
-            Distribute(this.s1,0,(this.np-1),this.s2,0,this.np,this.ds);
+            Distribute(this.s1,0,(this.np-1),this.s2,0,(this.n-1),this.ds);
             /*
              * Plot
              */
             this.outX = new float[this.n];
             this.outY = new float[this.n];
 
-            for (int cc = 0; cc < this.n; cc++){
+            for (int cc = 0, k = 0; cc < this.n; cc++){
+
+                final float s2 = this.s2[cc];
+
+                k = Seek(this.s1,this.np,s2,k);
 
-                this.outX[cc] = Splint(this.s1,this.inX,this.xp,this.np,this.s2[cc]);
-                this.outY[cc] = Splint(this.s1,this.inY,this.yp,this.np,this.s2[cc]);
+                this.outX[cc] = Eval(this.s1,this.inX,this.xp,k,s2);
+                this.outY[cc] = Eval(this.s1,this.inY,this.yp,k,s2);
             }
             this.outX[0] = this.inX[0];
             this.outY[0] = this.inY[0];
@@ -125,6 +188,45 @@ public class Spline
             this.outY.clone()
         };
     }
+    /**
+     * @return Arc length of the input points, the greatest parameter
+     */
+    public float length(){
+        return this.s1[this.np-1];
+    }
+    /**
+     * @return A new cursor for the evaluation of this spline
+     */
+    public Cursor cursor(){
+        return new Cursor();
+    }
+    /**
+     * Evaluate the spline for a list of parameters, without
+     * allocation.  Parameters in order are evaluated in linear time.
+     * @param t Arc length parameters from zero to {@link #length()}
+     * @param out Destination list in <i>(X,Y)*</i> order of twice the
+     * length of the parameter list
+     * @return Destination
+     */
+    public float[] evaluate(float[] t, float[] out){
+        if (null != t && null != out && out.length >= (2 * t.length)){
+            final float[] s1 = this.s1, inX = this.inX, inY = this.inY, xp = this.xp, yp = this.yp;
+            final int np = this.np;
+
+            for (int cc = 0, k = 0, o = 0, count = t.length; cc < count; cc++, o += 2){
+
+                final float s = t[cc];
+
+                k = Seek(s1,np,s,k);
+
+                out[o]   = Eval(s1,inX,xp,k,s);
+                out[o+1] = Eval(s1,inY,yp,k,s);
+            }
+            return out;
+        }
+        else
+            throw new IllegalArgumentException();
+    }
 
 
     public final static void Smooth(float[] x, float[] y){
@@ -154,9 +256,20 @@ public class Spline
      */
     public final static void Generate(float[] x, float[] y, int n, float[] y2){
 
+        Generate(x,y,n,y2,(new float[n]));
+    }
+    /**
+     * Numerical Recipes' tridiagonal sweep for the natural spline,
+     * with caller scratch.  The forward sweep eliminates the
+     * subdiagonal, holding the superdiagonal in (y2) and the right
+     * hand side in (u), and back substitution solves (y2) in place.
+     * 
+     * @param u Scratch list of length (n)
+     */
+    public final static void Generate(float[] x, float[] y, int n, float[] y2, float[] u){
+
         y2[0] = ZERO;
 
-        float u[] = new float[n];
         u[0] = ZERO;
 
         {
@@ -191,9 +304,32 @@ public class Spline
      */
     public final static float Splint(float xa[], float ya[], float y2a[], int n, float x)
     {
-        int klo = 1, khi = n, k;
-        float h, b, a;
-
+        return Eval(xa,ya,y2a,Seek(xa,n,x,-1),x);
+    }
+    /**
+     * Locate the segment <i>[xa[k],xa[k+1]]</i> containing (x),
+     * first trying the segment of a previous parameter and its
+     * neighbors before bisection.
+     * 
+     * @param k Previous segment, or negative one
+     * @return Segment from zero to (n-2), the first or last segment
+     * for (x) outside of the knots
+     */
+    public final static int Seek(float xa[], int n, float x, int k){
+        final int trm = (n-2);
+        if (-1 < k && k <= trm){
+            if (xa[k] <= x){
+                if (k == trm || x < xa[k+1])
+                    return k;
+                else if ((k+1) == trm || x < xa[k+2])
+                    return (k+1);
+            }
+            else if (0 == k)
+                return 0;
+            else if (xa[k-1] <= x)
+                return (k-1);
+        }
+        int klo = 0, khi = (n-1);
         while (khi-klo > 1) {
             k=(khi+klo) >> 1;
             if (xa[k] > x)
@@ -201,12 +337,21 @@ public class Spline
             else
                 klo=k;
         }
-        h = xa[khi]-xa[klo];
+        return klo;
+    }
+    /**
+     * @param k Segment from {@link #Seek}
+     */
+    public final static float Eval(float xa[], float ya[], float y2a[], int k, float x)
+    {
+        final int klo = k, khi = (k+1);
+
+        final float h = xa[khi]-xa[klo];
         if (h == ZERO) 
             throw new IllegalStateException("Bad xa input to routine splint"); 
         else {
-            a = (xa[khi]-x)/h;
-            b = (x-xa[klo])/h; 
+            final float a = (xa[khi]-x)/h;
+            final float b = (x-xa[klo])/h; 
             return (a*ya[klo]+b*ya[khi]+((a*a*a-a)*y2a[klo]+(b*b*b-b)*y2a[khi])*(h*h)/6.0f);
         }
     }
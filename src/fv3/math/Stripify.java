@@ -0,0 +1,430 @@
+/*
+ * fv3.math
+ * Copyright (C) 2012, John Pritchard, all rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fv3.math;
+
+/**
+ * Convert {@link VertexArray.Type#Triangles Triangles} to a single
+ * {@link VertexArray.Type#TriangleStrip TriangleStrip}.
+ *
+ * <p> Vertices are welded to discover shared edges, and triangle
+ * adjacency is defined over directed edges.  Strips are grown
+ * greedily from the least connected remaining triangle, trying each
+ * of its three rotations, and strips are joined with degenerate
+ * triangles.  The face order of {@link VertexArray#FaceIndeces} is
+ * preserved, so that strip faces have the winding of their source
+ * triangles. </p>
+ *
+ * <p> In the spirit of <code>etc/gridmesh.c</code>, a regular grid
+ * of quads produces long strips approaching one vertex per
+ * triangle. </p>
+ *
+ * @see VertexArray#vertices(VertexArray.Type)
+ * @author jdp
+ */
+public class Stripify
+    extends Abstract
+{
+
+    /**
+     * Number of source triangles
+     */
+    public final int countTriangles;
+    /**
+     * Number of strips joined into the result
+     */
+    public final int countStrips;
+    /**
+     * Welded vertex pool
+     */
+    private final float[] pool;
+    /**
+     * Strip sequence of indeces into the pool
+     */
+    private final int[] strip;
+
+
+    public Stripify(VertexArray triangles){
+        this(triangles,ZERO);
+    }
+    /**
+     * @param triangles Vertex array of type Triangles
+     * @param e Weld epsilon for the discovery of shared vertices
+     */
+    public Stripify(VertexArray triangles, float e){
+        super();
+        if (null == triangles)
+            throw new IllegalArgumentException();
+        else if (VertexArray.Type.Triangles != triangles.type)
+            throw new IllegalArgumentException(triangles.type.name());
+        else {
+            final int countV = (3 * (triangles.countVertices/3));
+            final int countT = (countV/3);
+
+            this.countTriangles = countT;
+
+            IndexedVertexArray welded = new IndexedVertexArray(VertexArray.Type.Triangles,
+                                                               java.util.Arrays.copyOf(triangles.vertices,(3 * countV)),
+                                                               null,
+                                                               IndexedVertexArray.Indeces(VertexArray.Type.Triangles,countV));
+            welded.weld(e,false);
+
+            this.pool = welded.vertices;
+            /*
+             * The strip faces of VertexArray.FaceIndeces have the
+             * reverse winding of the GL strip definition employed
+             * here, so the triangles are reversed on input.
+             */
+            final int[] tris = welded.indeces;
+            for (int t = 0; t < countT; t++){
+                final int b = (3 * t) + 1;
+                final int c = (b + 1);
+                final int tmp = tris[b];
+                tris[b] = tris[c];
+                tris[c] = tmp;
+            }
+            final Builder builder = new Builder(tris,countT);
+
+            this.strip = builder.build();
+            this.countStrips = builder.countStrips;
+        }
+    }
+
+
+    /**
+     * @return Number of vertices in the strip, including degenerate
+     * joins
+     */
+    public final int countVertices(){
+        return this.strip.length;
+    }
+    /**
+     * @return Ratio of strip vertices to source triangle vertices,
+     * from one third (ideal) to one (no reduction) or greater
+     */
+    public final float ratio(){
+        if (0 == this.countTriangles)
+            return 1.0f;
+        else
+            return ((float)this.strip.length / (float)(3 * this.countTriangles));
+    }
+    /**
+     * @return Strip as indeces into the {@link #pool}
+     */
+    public final int[] indeces(){
+        return this.strip;
+    }
+    /**
+     * @return Welded vertex pool
+     */
+    public final float[] pool(){
+        return this.pool;
+    }
+    /**
+     * @return Strip vertices in <i>(X,Y,Z)*</i>
+     */
+    public final float[] vertices(){
+        final float[] pool = this.pool;
+        final int[] strip = this.strip;
+        final int count = strip.length;
+        final float[] re = new float[3 * count];
+        for (int cc = 0, ro = 0; cc < count; cc++, ro += 3){
+
+            System.arraycopy(pool,(3 * strip[cc]),re,ro,3);
+        }
+        return re;
+    }
+    public String toString(){
+        return String.format("%d triangles, %d strips, %d vertices, ratio %.3f",
+                             this.countTriangles,this.countStrips,this.strip.length,this.ratio());
+    }
+
+
+    /**
+     * Greedy strip construction over a triangle index list.
+     */
+    private final static class Builder
+        extends Object
+    {
+        final int[] tris;
+        final int countT;
+        /*
+         * Directed edge table: (a->b) to triangle
+         */
+        final long[] edgeKey;
+        final int[] edgeTri;
+        final int edgeMask;
+        /*
+         * Triangle neighbors across each of its three edges, or -1
+         */
+        final int[] adjacent;
+
+        final boolean[] used;
+        final int[] degree;
+        final int[] trial;
+        int trialId;
+        /*
+         * Bucket queue on the number of unused neighbors, with lazy
+         * deletion of stale entries
+         */
+        final int[][] bucket = new int[4][];
+        final int[] bucketN = new int[4];
+
+        int[] out;
+        int countOut, countStrips;
+
+
+        Builder(int[] tris, int countT){
+            super();
+            this.tris = tris;
+            this.countT = countT;
+
+            int size = 16;
+            while (size < (6 * countT))
+                size <<= 1;
+            this.edgeKey = new long[size];
+            this.edgeTri = new int[size];
+            this.edgeMask = (size-1);
+            java.util.Arrays.fill(this.edgeTri,-1);
+
+            for (int t = 0; t < countT; t++){
+                final int o = (3 * t);
+                final int a = tris[o], b = tris[o+1], c = tris[o+2];
+                if (a != b && b != c && c != a){
+                    this.putEdge(a,b,t);
+                    this.putEdge(b,c,t);
+                    this.putEdge(c,a,t);
+                }
+            }
+
+            this.adjacent = new int[3 * countT];
+            this.degree = new int[countT];
+            for (int t = 0; t < countT; t++){
+                final int o = (3 * t);
+                final int a = tris[o], b = tris[o+1], c = tris[o+2];
+                int d = 0;
+                d += ((-1 < (this.adjacent[o]   = this.getEdge(b,a,t)))?(1):(0));
+                d += ((-1 < (this.adjacent[o+1] = this.getEdge(c,b,t)))?(1):(0));
+                d += ((-1 < (this.adjacent[o+2] = this.getEdge(a,c,t)))?(1):(0));
+                this.degree[t] = d;
+            }
+            this.used = new boolean[countT];
+            this.trial = new int[countT];
+            this.out = new int[Math.max(16,(countT + (countT>>1) + 8))];
+
+            for (int d = 0; d < 4; d++)
+                this.bucket[d] = new int[16];
+
+            for (int t = 0; t < countT; t++){
+                final int o = (3 * t);
+                final int a = tris[o], b = tris[o+1], c = tris[o+2];
+                if (a != b && b != c && c != a)
+                    this.push(t);
+                else
+                    this.used[t] = true;
+            }
+        }
+
+
+        int[] build(){
+            final int[] tris = this.tris;
+            final int[][] bucket = this.bucket;
+            final int[] bucketN = this.bucketN;
+
+            final int[] best = new int[3];
+
+            while (true){
+                int start = -1;
+                for (int d = 0; d < 4 && -1 == start; d++){
+                    while (0 < bucketN[d]){
+                        final int t = bucket[d][--bucketN[d]];
+                        if (!this.used[t] && d == this.degree[t]){
+                            start = t;
+                            break;
+                        }
+                    }
+                }
+                if (-1 == start)
+                    break;
+                else {
+                    final int o = (3 * start);
+                    int bestLength = -1;
+                    for (int r = 0; r < 3; r++){
+                        final int a = tris[o+r];
+                        final int b = tris[o+((r+1)%3)];
+                        final int c = tris[o+((r+2)%3)];
+                        final int length = this.grow(start,a,b,c,false);
+                        if (length > bestLength){
+                            bestLength = length;
+                            best[0] = a;
+                            best[1] = b;
+                            best[2] = c;
+                        }
+                    }
+                    this.grow(start,best[0],best[1],best[2],true);
+                }
+            }
+            return java.util.Arrays.copyOf(this.out,this.countOut);
+        }
+        /**
+         * Walk a strip from the start triangle in the given rotation.
+         * @param commit Mark used triangles and emit the strip, or
+         * only measure the strip
+         * @return Number of triangles in the strip
+         */
+        int grow(int start, int a, int b, int c, boolean commit){
+            final int id = ++this.trialId;
+            final int[] tris = this.tris;
+
+            if (commit){
+                this.join(a);
+                this.emit(a);
+                this.emit(b);
+                this.emit(c);
+                this.use(start);
+            }
+            else
+                this.trial[start] = id;
+
+            int length = 1;
+            int p = b, q = c;
+            for (int i = 1; ; i++){
+                /*
+                 * Strip triangle (i) is (p,q,n) for even (i), and
+                 * (q,p,n) for odd (i).  Locate the triangle having
+                 * that directed edge.
+                 */
+                final int ea = ((0 == (i&1))?(p):(q));
+                final int eb = ((0 == (i&1))?(q):(p));
+
+                final int t = this.find(ea,eb,id);
+                if (-1 == t)
+                    break;
+                else {
+                    final int o = (3 * t);
+                    final int x = tris[o], y = tris[o+1], z = tris[o+2];
+                    final int n;
+                    if (x != ea && x != eb)
+                        n = x;
+                    else if (y != ea && y != eb)
+                        n = y;
+                    else
+                        n = z;
+
+                    if (commit){
+                        this.emit(n);
+                        this.use(t);
+                    }
+                    else
+                        this.trial[t] = id;
+
+                    length += 1;
+                    p = q;
+                    q = n;
+                }
+            }
+            if (commit)
+                this.countStrips += 1;
+
+            return length;
+        }
+        /**
+         * @return An unused triangle having the directed edge (a,b),
+         * excluding the current trial
+         */
+        int find(int a, int b, int id){
+            final long key = Key(a,b);
+            final long[] edgeKey = this.edgeKey;
+            final int[] edgeTri = this.edgeTri;
+            final int mask = this.edgeMask;
+            for (int h = (Hash(key) & mask); -1 < edgeTri[h]; h = ((h+1) & mask)){
+                if (key == edgeKey[h]){
+                    final int t = edgeTri[h];
+                    if (!this.used[t] && id != this.trial[t])
+                        return t;
+                }
+            }
+            return -1;
+        }
+        void use(int t){
+            this.used[t] = true;
+            final int o = (3 * t);
+            for (int e = 0; e < 3; e++){
+                final int n = this.adjacent[o+e];
+                if (-1 < n && !this.used[n]){
+                    this.degree[n] -= 1;
+                    this.push(n);
+                }
+            }
+        }
+        /**
+         * Join with degenerate triangles such that the next strip
+         * starts at an even face.
+         */
+        void join(int first){
+            final int count = this.countOut;
+            if (0 < count){
+                final int last = this.out[count-1];
+                this.emit(last);
+                if (1 == (count & 1))
+                    this.emit(last);
+                this.emit(first);
+            }
+        }
+        void emit(int index){
+            int[] out = this.out;
+            if (this.countOut == out.length)
+                this.out = out = java.util.Arrays.copyOf(out,(out.length + (out.length>>1)));
+            out[this.countOut++] = index;
+        }
+        void putEdge(int a, int b, int t){
+            final long key = Key(a,b);
+            final int mask = this.edgeMask;
+            int h = (Hash(key) & mask);
+            while (-1 < this.edgeTri[h])
+                h = ((h+1) & mask);
+            this.edgeKey[h] = key;
+            this.edgeTri[h] = t;
+        }
+        int getEdge(int a, int b, int exclude){
+            final long key = Key(a,b);
+            final int mask = this.edgeMask;
+            for (int h = (Hash(key) & mask); -1 < this.edgeTri[h]; h = ((h+1) & mask)){
+                if (key == this.edgeKey[h] && exclude != this.edgeTri[h])
+                    return this.edgeTri[h];
+            }
+            return -1;
+        }
+
+
+        void push(int t){
+            final int d = this.degree[t];
+            int[] list = this.bucket[d];
+            if (this.bucketN[d] == list.length)
+                this.bucket[d] = list = java.util.Arrays.copyOf(list,(list.length<<1));
+            list[this.bucketN[d]++] = t;
+        }
+        static long Key(int a, int b){
+            return ((((long)a)<<32) | (b & 0xffffffffL));
+        }
+        static int Hash(long key){
+            long h = (key * 0x9E3779B97F4A7C15L);
+            return (int)(h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,660 @@
+/*
+ * fv3.math
+ * Copyright (C) 2012, John Pritchard, all rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fv3.math;
+
+import path.Winding;
+
+/**
+ * Fill a {@link Path} with triangles by a sweep line over its
+ * flattened contours.
+ *
+ * <p> Contour vertices are sorted by <i>(Y,X)</i>, and swept
+ * upwards over a list of active edges ordered by X.  Each region
+ * between neighboring active edges has the winding number of the
+ * edges to its left, and regions inside by the winding rule of the
+ * path ({@link Winding#NonZero NonZero} or {@link Winding#EvenOdd
+ * EvenOdd}) are decomposed into Y monotone polygons as they are
+ * swept, and each monotone polygon is triangulated on line by the
+ * reflex chain stack.  Split and merge vertices are resolved with
+ * the helper diagonals of the monotone partition, so that contours
+ * with holes and multiple outlines are filled in <i>O(n log
+ * n)</i>. </p>
+ *
+ * <p> Triangles are written into one vertex array of type {@link
+ * VertexArray.Type#Triangles Triangles} in the XY plane with
+ * counter clockwise winding.  Contours are expected not to cross one
+ * another, as for the outlines of glyphs. </p>
+ *
+ * @see Path#tessellate(float)
+ * @see Flatten
+ * @author jdp
+ */
+public final class Tessellate
+    extends Abstract
+{
+    /**
+     * Reflex chain sides
+     */
+    private final static int Left = 1, Right = 2, Both = 3;
+
+
+    /**
+     * @param path Source having a winding rule, or non zero by
+     * default
+     * @param e Maximum chord deviation for curves
+     * @return Vertex array of type Triangles
+     */
+    public final static VertexArray Triangles(Path path, float e){
+
+        return Triangles(Flatten.LineStrips(path,e),path.getWinding());
+    }
+    /**
+     * @param contours Closed contours in the XY plane, as from {@link
+     * Flatten#LineStrips}
+     * @param winding Winding rule, or null for non zero
+     * @return Vertex array of type Triangles
+     */
+    public final static VertexArray Triangles(VertexArray[] contours, Winding winding){
+
+        return new Sweep(contours,(Winding.EvenOdd == winding)).triangles;
+    }
+
+
+    /**
+     * Y monotone polygon triangulated on line from its bottom vertex.
+     */
+    private final static class Poly
+        extends java.lang.Object
+    {
+        int[] stack = new int[8];
+
+        int[] sides = new int[8];
+
+        int size;
+
+
+        Poly(int bottom){
+            super();
+            this.push(bottom,Both);
+        }
+
+
+        int top(){
+            return this.stack[this.size-1];
+        }
+        int topSide(){
+            return this.sides[this.size-1];
+        }
+        /**
+         * @param v Vertex following the stack in sweep order
+         * @param side Chain of the vertex
+         */
+        Poly add(Sweep s, int v, int side){
+            final int size = this.size;
+            if (1 == size)
+                this.push(v,side);
+            else if (side != this.sides[size-1] && Both != this.sides[size-1]){
+                /*
+                 * Opposite chain: fan to the stack
+                 */
+                final int[] stack = this.stack;
+                for (int cc = 0, end = (size - 1); cc < end; cc++)
+                    s.triangle(v,stack[cc],stack[cc+1]);
+
+                final int t = stack[size-1];
+                final int ts = this.sides[size-1];
+                this.size = 0;
+                this.push(t,ts);
+                this.push(v,side);
+            }
+            else {
+                /*
+                 * Same chain: cut convex vertices off the reflex chain
+                 */
+                final int[] stack = this.stack;
+                final int[] sides = this.sides;
+                int n = (size - 1);
+                int last = stack[n];
+                int lastSide = sides[n];
+                while (0 < n && s.convex(side,stack[n-1],last,v)){
+                    s.triangle(v,last,stack[n-1]);
+                    n -= 1;
+                    last = stack[n];
+                    lastSide = sides[n];
+                }
+                this.size = n;
+                this.push(last,lastSide);
+                this.push(v,side);
+            }
+            return this;
+        }
+        /**
+         * @param v Top vertex of both chains
+         */
+        void close(Sweep s, int v){
+            final int[] stack = this.stack;
+            for (int cc = 0, end = (this.size - 1); cc < end; cc++)
+                s.triangle(v,stack[cc],stack[cc+1]);
+            this.size = 0;
+        }
+        private void push(int v, int side){
+            final int size = this.size;
+            if (size == this.stack.length){
+                this.stack = java.util.Arrays.copyOf(this.stack,(size << 1));
+                this.sides = java.util.Arrays.copyOf(this.sides,(size << 1));
+            }
+            this.stack[size] = v;
+            this.sides[size] = side;
+            this.size = (size + 1);
+        }
+    }
+    /**
+     * Inside region between two active edges.  Following a merge
+     * vertex the region holds two polygons, on either side of the
+     * pending diagonal from the merge vertex to the next vertex of
+     * the region.
+     */
+    private final static class Region
+        extends java.lang.Object
+    {
+        Poly main;
+
+        Poly pending;
+
+
+        Region(Poly main){
+            super();
+            this.main = main;
+        }
+
+
+        /**
+         * Vertex on the right boundary of the region
+         */
+        void right(Sweep s, int v){
+            if (null != this.pending){
+                this.pending.close(s,v);
+                this.pending = null;
+            }
+            this.main.add(s,v,Right);
+        }
+        /**
+         * Vertex on the left boundary of the region
+         */
+        void left(Sweep s, int v){
+            if (null != this.pending){
+                this.main.close(s,v);
+                this.main = this.pending;
+                this.pending = null;
+            }
+            this.main.add(s,v,Left);
+        }
+        /**
+         * Region closes at its top vertex
+         */
+        void end(Sweep s, int v){
+            this.main.close(s,v);
+            if (null != this.pending){
+                this.pending.close(s,v);
+                this.pending = null;
+            }
+        }
+        /**
+         * Split vertex inside the region
+         * @return Region to the right of the split, this region
+         * continuing to the left
+         */
+        Region split(Sweep s, int v){
+            if (null != this.pending){
+                final Poly right = this.pending;
+                this.pending = null;
+                this.main.add(s,v,Right);
+                return new Region(right.add(s,v,Left));
+            }
+            else {
+                final Poly main = this.main;
+                final int h = main.top();
+                if (Right == main.topSide()){
+                    main.add(s,v,Right);
+                    return new Region(new Poly(h).add(s,v,Left));
+                }
+                else {
+                    main.add(s,v,Left);
+                    this.main = new Poly(h).add(s,v,Right);
+                    return new Region(main);
+                }
+            }
+        }
+        /**
+         * Merge vertex between this region and its right neighbor
+         */
+        Region merge(Sweep s, int v, Region right){
+            this.right(s,v);
+            right.left(s,v);
+            this.pending = right.main;
+            return this;
+        }
+    }
+    /**
+     * Sweep state.
+     */
+    private final static class Sweep
+        extends java.lang.Object
+    {
+        final boolean evenOdd;
+        /**
+         * Vertex pool <i>(X,Y)*</i>
+         */
+        float[] xy;
+        /**
+         * Next and previous vertex in each contour
+         */
+        int[] next, prev;
+
+        int count;
+        /**
+         * Active edges, identified by their first vertex in contour
+         * order, with the winding number and inside region to the
+         * right of each
+         */
+        int[] active;
+
+        int[] winding;
+
+        Region[] regions;
+
+        int size;
+
+        VertexArray triangles;
+
+        float[] out;
+
+        int outCount;
+
+
+        Sweep(VertexArray[] contours, boolean evenOdd){
+            super();
+            this.evenOdd = evenOdd;
+            this.pool(contours);
+
+            final int count = this.count;
+            this.active = new int[16];
+            this.winding = new int[16];
+            this.regions = new Region[16];
+            this.triangles = new VertexArray(VertexArray.Type.Triangles,Math.max(3,3 * count));
+            this.out = this.triangles.vertices;
+
+            final int[] events = new int[count];
+            for (int cc = 0; cc < count; cc++)
+                events[cc] = cc;
+            this.sort(events,new int[count],0,count);
+
+            for (int cc = 0; cc < count; cc++)
+                this.event(events[cc]);
+
+            this.triangles.countVertices(this.outCount);
+            this.triangles.computeNormals();
+        }
+
+
+        /**
+         * Collect contours into the vertex pool, dropping repeated
+         * points and the closing point.
+         */
+        void pool(VertexArray[] contours){
+            int many = 0;
+            for (VertexArray c : contours)
+                many += c.countVertices;
+
+            final float[] xy = new float[2 * many];
+            final int[] next = new int[many];
+            final int[] prev = new int[many];
+            int count = 0;
+
+            for (VertexArray c : contours){
+                final float[] v = c.vertices;
+                final int first = count;
+                for (int cc = 0, end = c.countVertices; cc < end; cc++){
+                    final float x = v[(3 * cc) + X], y = v[(3 * cc) + Y];
+                    if (count > first && x == xy[2 * (count - 1)] && y == xy[(2 * (count - 1)) + 1])
+                        continue;
+                    xy[2 * count] = x;
+                    xy[(2 * count) + 1] = y;
+                    count += 1;
+                }
+                while ((count - first) > 1 && xy[2 * first] == xy[2 * (count - 1)] && xy[(2 * first) + 1] == xy[(2 * (count - 1)) + 1])
+                    count -= 1;
+
+                if (3 > (count - first))
+                    count = first;
+                else {
+                    for (int cc = first; cc < count; cc++){
+                        next[cc] = ((cc + 1) < count)?(cc + 1):(first);
+                        prev[cc] = (cc > first)?(cc - 1):(count - 1);
+                    }
+                }
+            }
+            this.xy = xy;
+            this.next = next;
+            this.prev = prev;
+            this.count = count;
+        }
+        /**
+         * Sweep order: by Y then X
+         */
+        int compare(int a, int b){
+            final float[] xy = this.xy;
+            final float ay = xy[(2 * a) + 1], by = xy[(2 * b) + 1];
+            if (ay < by)
+                return -1;
+            else if (ay > by)
+                return 1;
+            else {
+                final float ax = xy[2 * a], bx = xy[2 * b];
+                if (ax < bx)
+                    return -1;
+                else if (ax > bx)
+                    return 1;
+                else
+                    return (a - b);
+            }
+        }
+        /**
+         * Merge sort
+         */
+        void sort(int[] list, int[] tmp, int from, int to){
+            if (1 < (to - from)){
+                final int mid = ((from + to) >>> 1);
+                this.sort(list,tmp,from,mid);
+                this.sort(list,tmp,mid,to);
+                if (0 < this.compare(list[mid-1],list[mid])){
+                    System.arraycopy(list,from,tmp,from,(to - from));
+                    for (int i = from, a = from, b = mid; i < to; i++){
+                        if (b >= to || (a < mid && 0 >= this.compare(tmp[a],tmp[b])))
+                            list[i] = tmp[a++];
+                        else
+                            list[i] = tmp[b++];
+                    }
+                }
+            }
+        }
+        /**
+         * Edge from vertex (e) to its next vertex
+         */
+        int bottom(int e){
+            final int n = this.next[e];
+            return (0 > this.compare(e,n))?(e):(n);
+        }
+        int top(int e){
+            final int n = this.next[e];
+            return (0 > this.compare(e,n))?(n):(e);
+        }
+        /**
+         * @return Positive one for an edge upwards in contour order
+         */
+        int direction(int e){
+            return (0 > this.compare(e,this.next[e]))?(1):(-1);
+        }
+        /**
+         * @return X of the edge on the sweep line through the vertex
+         */
+        float edgeX(int e, int v){
+            final float[] xy = this.xy;
+            final int b = this.bottom(e), t = this.top(e);
+            final float bx = xy[2 * b], by = xy[(2 * b) + 1];
+            final float tx = xy[2 * t], ty = xy[(2 * t) + 1];
+            final float vx = xy[2 * v], vy = xy[(2 * v) + 1];
+            if (by == ty)
+                return Math.max(bx,Math.min(tx,vx));
+            else if (vy <= by)
+                return bx;
+            else if (vy >= ty)
+                return tx;
+            else
+                return bx + ((vy - by) * ((tx - bx) / (ty - by)));
+        }
+        /**
+         * @return Number of active edges left of the vertex
+         */
+        int search(int v){
+            final float vx = this.xy[2 * v];
+            int lo = 0, hi = this.size;
+            while (lo < hi){
+                final int mid = ((lo + hi) >>> 1);
+                if (this.edgeX(this.active[mid],v) < vx)
+                    lo = (mid + 1);
+                else
+                    hi = mid;
+            }
+            return lo;
+        }
+        /**
+         * @return Index of the active edge
+         */
+        int indexOf(int e, int v){
+            final int[] active = this.active;
+            for (int cc = this.search(v), end = this.size; cc < end; cc++){
+                if (e == active[cc])
+                    return cc;
+                else if (this.edgeX(active[cc],v) != this.xy[2 * v])
+                    break;
+            }
+            for (int cc = 0, end = this.size; cc < end; cc++){
+                if (e == active[cc])
+                    return cc;
+            }
+            throw new IllegalStateException(String.valueOf(e));
+        }
+        boolean inside(int w){
+            if (this.evenOdd)
+                return (0 != (w & 1));
+            else
+                return (0 != w);
+        }
+        void event(int v){
+            final int ep = this.prev[v];
+            /*
+             * Edges (ep) and (v) are incident
+             */
+            final boolean endP = (v == this.top(ep)), endV = (v == this.top(v));
+            int a, b, m = 0;
+            if (endP && endV){
+                final int ia = this.indexOf(ep,v), ib = this.indexOf(v,v);
+                a = Math.min(ia,ib);
+                b = Math.max(ia,ib);
+                m = 2;
+            }
+            else if (endP){
+                a = b = this.indexOf(ep,v);
+                m = 1;
+            }
+            else if (endV){
+                a = b = this.indexOf(v,v);
+                m = 1;
+            }
+            else {
+                a = this.search(v);
+                b = (a - 1);
+            }
+            /*
+             * Started edges ordered left to right above the vertex
+             */
+            int s0 = -1, s1 = -1, n = 0;
+            if (!endP){
+                s0 = ep;
+                n = 1;
+            }
+            if (!endV){
+                if (0 == n)
+                    s0 = v;
+                else
+                    s1 = v;
+                n += 1;
+            }
+            if (2 == n && this.leftOf(s1,s0,v)){
+                final int t = s0;
+                s0 = s1;
+                s1 = t;
+            }
+            final Region[] regions = this.regions;
+            final int wl = (0 < a)?(this.winding[a-1]):(0);
+            Region left = (0 < a)?(regions[a-1]):(null);
+            Region right = (0 <= b)?(regions[b]):(null);
+            Region[] add = new Region[n];
+            int[] addW = new int[n];
+
+            if (0 == m){
+                right = null;
+                if (0 < n && null != left)
+                    right = left.split(this,v);
+            }
+            else {
+                for (int cc = a; cc < b; cc++){
+                    if (null != regions[cc])
+                        regions[cc].end(this,v);
+                }
+                if (0 < n){
+                    if (null != left)
+                        left.right(this,v);
+                    if (null != right)
+                        right.left(this,v);
+                }
+                else if (null != left && null != right)
+                    left = left.merge(this,v,right);
+                else if (null != left)
+                    left.right(this,v);
+                else if (null != right){
+                    right.left(this,v);
+                    left = right;
+                }
+            }
+            /*
+             * Windings and regions right of the started edges
+             */
+            int w = wl;
+            for (int cc = 0; cc < n; cc++){
+                final int e = (0 == cc)?(s0):(s1);
+                w += this.direction(e);
+                addW[cc] = w;
+                if ((n - 1) == cc)
+                    add[cc] = right;
+                else if (this.inside(w))
+                    add[cc] = new Region(new Poly(v));
+            }
+            if (0 < a)
+                regions[a-1] = left;
+
+            this.splice(a,m,n,s0,s1,addW,add);
+        }
+        /**
+         * Replace (m) active edges from (a) with the started edges.
+         */
+        void splice(int a, int m, int n, int s0, int s1, int[] addW, Region[] add){
+            final int size = this.size;
+            final int nsize = (size - m + n);
+            if (nsize > this.active.length){
+                final int length = Math.max(nsize,(this.active.length << 1));
+                this.active = java.util.Arrays.copyOf(this.active,length);
+                this.winding = java.util.Arrays.copyOf(this.winding,length);
+                this.regions = java.util.Arrays.copyOf(this.regions,length);
+            }
+            final int tail = (size - (a + m));
+            if (m != n && 0 < tail){
+                System.arraycopy(this.active,(a + m),this.active,(a + n),tail);
+                System.arraycopy(this.winding,(a + m),this.winding,(a + n),tail);
+                System.arraycopy(this.regions,(a + m),this.regions,(a + n),tail);
+            }
+            for (int cc = 0; cc < n; cc++){
+                this.active[a + cc] = (0 == cc)?(s0):(s1);
+                this.winding[a + cc] = addW[cc];
+                this.regions[a + cc] = add[cc];
+            }
+            for (int cc = nsize; cc < size; cc++)
+                this.regions[cc] = null;
+
+            this.size = nsize;
+        }
+        /**
+         * @return Edge (a) is left of edge (b) above their common
+         * bottom vertex (v)
+         */
+        boolean leftOf(int a, int b, int v){
+            final float[] xy = this.xy;
+            final int ta = this.top(a), tb = this.top(b);
+            final float vx = xy[2 * v], vy = xy[(2 * v) + 1];
+            final float ax = xy[2 * ta] - vx, ay = xy[(2 * ta) + 1] - vy;
+            final float bx = xy[2 * tb] - vx, by = xy[(2 * tb) + 1] - vy;
+            return (0.0f < ((bx * ay) - (by * ax)));
+        }
+        /**
+         * @return The vertex (b) is convex on its chain from (a) to
+         * (c)
+         */
+        boolean convex(int side, int a, int b, int c){
+            final float[] xy = this.xy;
+            final float abx = xy[2 * b] - xy[2 * a], aby = xy[(2 * b) + 1] - xy[(2 * a) + 1];
+            final float bcx = xy[2 * c] - xy[2 * b], bcy = xy[(2 * c) + 1] - xy[(2 * b) + 1];
+            final float cross = (abx * bcy) - (aby * bcx);
+            if (Left == side)
+                return (0.0f > cross);
+            else
+                return (0.0f < cross);
+        }
+        /**
+         * Write a counter clockwise triangle, dropping degenerate
+         * triangles.
+         */
+        void triangle(int a, int b, int c){
+            final float[] xy = this.xy;
+            final float ax = xy[2 * a], ay = xy[(2 * a) + 1];
+            final float bx = xy[2 * b], by = xy[(2 * b) + 1];
+            final float cx = xy[2 * c], cy = xy[(2 * c) + 1];
+            final float area = ((bx - ax) * (cy - ay)) - ((by - ay) * (cx - ax));
+            if (0.0f != area){
+                int o = this.outCount;
+                if ((o + 3) > this.triangles.capacity()){
+                    this.triangles.countVertices(Math.max(o + 3,(o << 1)));
+                    this.out = this.triangles.vertices;
+                }
+                final float[] out = this.out;
+                o *= 3;
+                out[o+X] = ax;
+                out[o+Y] = ay;
+                if (0.0f < area){
+                    out[o+3+X] = bx;
+                    out[o+3+Y] = by;
+                    out[o+6+X] = cx;
+                    out[o+6+Y] = cy;
+                }
+                else {
+                    out[o+3+X] = cx;
+                    out[o+3+Y] = cy;
+                    out[o+6+X] = bx;
+                    out[o+6+Y] = by;
+                }
+                this.outCount += 3;
+            }
+        }
+    }
+
+
+    private Tessellate(){
+        super();
+    }
+}
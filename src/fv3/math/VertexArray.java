@@ -37,6 +37,39 @@ package fv3.math;
  * {@link #countVertices} method.  This operation expands or contracts
  * the vertices and normals buffers, preserving information. </p>
  * 
+ * <h3>Capacity</h3>
+ * 
+ * <p> The length of the vertices and normals buffers is the capacity
+ * of the vertex array, which may exceed the number of vertices.
+ * Contracting the vertex array retains its capacity, and the append
+ * operations ({@link #addVertex}, {@link #addVerticesXY}, {@link
+ * #addVerticesXYZ}, {@link #addLinesXY}, {@link #addLinesXYZ} and
+ * {@link #add(VertexArray)}) grow capacity geometrically for a
+ * linear cost in building a vertex array incrementally.  See {@link
+ * #ensureCapacity} and {@link #trimToSize}.  The {@link #array} and
+ * {@link #normals} accessors trim capacity to return buffers of
+ * exactly {@link #countVertices} vertices. </p>
+ * 
+ * <h3>Clone</h3>
+ * 
+ * <p> A clone shares the vertices and normals buffers of its source,
+ * and each copies the shared buffers before its first modification.
+ * The {@link #array} and {@link #normals} accessors expose the
+ * buffers for modification, and so copy shared buffers.  Likewise,
+ * an immutable {@link VertexArraySnapshot} from {@link #freeze}
+ * shares the buffers of its vertex array. </p>
+ * 
+ * <h3>Modification</h3>
+ * 
+ * <p> Modifications of vertices and normals are recorded as ranges of
+ * vertex indeces in {@link #dirtyVertices} and {@link #dirtyNormals},
+ * for partial updates of GL buffers as in {@link
+ * VertexArrayStaging#update(VertexArray,VertexArrayDirty)}.  The
+ * consumer clears these when it has applied them.  Bounds are cached
+ * by blocks of {@link #BoundsBlock} vertices, and only the blocks
+ * having modified vertices are recomputed by {@link #getBounds}.
+ * </p>
+ * 
  * <h3>Path Type</h3>
  * 
  * <p> The subtype {@link Path} employs {@link Type$Path Type Path} to
@@ -127,8 +160,40 @@ public class VertexArray
     protected volatile float[] normals;
 
     protected volatile boolean useNormals, redefine;
+    /**
+     * The vertices and normals buffers are shared with a clone or its
+     * source, and are copied before modification.
+     */
+    private volatile boolean shared;
 
     protected volatile fv3.Bounds bounds;
+    /**
+     * Sorted index of the vertices, dropped with the bounds
+     */
+    private volatile VertexArraySlabs slabs;
+    /**
+     * Bounding volumes, dropped with the bounds
+     */
+    private volatile BoundingSphere boundingSphere;
+
+    private volatile OrientedBounds orientedBounds;
+
+    protected volatile VertexArrayDirty dirtyVertices = new VertexArrayDirty();
+
+    protected volatile VertexArrayDirty dirtyNormals = new VertexArrayDirty();
+
+    /**
+     * Number of vertices in a block of cached bounds
+     */
+    public final static int BoundsBlock = 1024;
+    /**
+     * Cached bounds (minX,maxX,minY,maxY,minZ,maxZ)* by block
+     */
+    private volatile float[] boundsBlocks;
+
+    private volatile int boundsCount;
+
+    private volatile VertexArrayDirty boundsDirty = new VertexArrayDirty();
 
 
     /**
@@ -202,15 +267,19 @@ public class VertexArray
 
     public VertexArray clear(){
         this.countVertices(0);
-        this.bounds = null;
         return this;
     }
     public VertexArray clone(){
         try {
+            this.shared = true;
+
             VertexArray clone = (VertexArray)super.clone();
-            clone.vertices = clone.vertices.clone();
-            if (null != this.normals)
-                clone.normals = clone.normals.clone();
+
+            clone.dirtyVertices = new VertexArrayDirty(this.dirtyVertices);
+            clone.dirtyNormals = new VertexArrayDirty(this.dirtyNormals);
+            clone.boundsDirty = new VertexArrayDirty(this.boundsDirty);
+            if (null != this.boundsBlocks)
+                clone.boundsBlocks = this.boundsBlocks.clone();
 
             return clone;
         }
@@ -224,30 +293,117 @@ public class VertexArray
             this.redefine = false;
         return re;
     }
+    /**
+     * @return Ranges of vertices modified since last cleared
+     */
+    public final VertexArrayDirty dirtyVertices(){
+        return this.dirtyVertices;
+    }
+    /**
+     * @return Ranges of normals modified since last cleared
+     */
+    public final VertexArrayDirty dirtyNormals(){
+        return this.dirtyNormals;
+    }
+    public final VertexArray clearDirty(){
+        this.dirtyVertices.clear();
+        this.dirtyNormals.clear();
+        return this;
+    }
+    /**
+     * Capture the state of this vertex array for concurrent readers.
+     * The snapshot shares the buffers of this vertex array, which are
+     * copied before the next modification of this vertex array.
+     * @return Immutable snapshot
+     */
+    public final VertexArraySnapshot freeze(){
+        final fv3.Bounds bounds = this.getBounds();
+        final Type type = this.type;
+        final int count = this.countVertices;
+        final float[] vertices = this.vertices;
+        final float[] normals = (this.useNormals)?(this.normals):(null);
+
+        this.shared = true;
+
+        return new VertexArraySnapshot(type,count,vertices,normals,bounds);
+    }
+    /**
+     * Index of the vertices sorted on each axis, for repeated slab
+     * and profile queries.  The index is retained until the vertices
+     * are modified, and shares the vertices buffer as a snapshot
+     * does.
+     * @return Slab index of the current vertices
+     */
+    public final VertexArraySlabs slabs(){
+        VertexArraySlabs slabs = this.slabs;
+        if (null == slabs){
+            slabs = new VertexArraySlabs(this.vertices,this.countVertices);
+            this.shared = true;
+            this.slabs = slabs;
+        }
+        return slabs;
+    }
+    /**
+     * Encode this vertex array with 16 bit positions within its
+     * bounds and octahedral normals, for large static models.
+     * @return Compact copy
+     */
+    public final VertexArrayQuantized quantize(){
+        return new VertexArrayQuantized(this);
+    }
+    /**
+     * Copy buffers shared with a clone or its source before
+     * modification.
+     */
+    protected final void unshare(){
+        if (this.shared){
+            this.shared = false;
+            this.vertices = this.vertices.clone();
+            if (null != this.normals)
+                this.normals = this.normals.clone();
+        }
+    }
+    /**
+     * Record the modification of a range of vertices or normals.
+     * @param from First vertex index, inclusive
+     * @param to Last vertex index, exclusive
+     * @param vertices Vertices modified
+     * @param normals Normals modified
+     */
+    protected final void dirty(int from, int to, boolean vertices, boolean normals){
+        if (vertices){
+            this.dirtyVertices.add(from,to);
+            this.boundsDirty.add(from,to);
+            this.bounds = null;
+            this.slabs = null;
+            this.boundingSphere = null;
+            this.orientedBounds = null;
+        }
+        if (normals)
+            this.dirtyNormals.add(from,to);
+
+        this.redefine = true;
+    }
     /**
      * Concatencate vertex lists over points, lines, triangles and
      * quads.
      */
     public VertexArray add(VertexArray that){
 
-        this.bounds = null;
-
         switch(this.type){
         case Points:
         case Lines:
         case Triangles:
         case Quads:
 
-            float[] thatV = that.vertices(this.type);
             {
-                final int thisL = (this.vertices.length);
-                final int thisC = (thisL/3);
-                final int thatL = (thatV.length);
-                final int thatC = (thatL/3);
+                final Type thatT = that.type;
+                final int thatN = that.countVertices;
+                final int thatC = VertexArrayConvert.CountVertices(this.type,thatT,thatN);
 
-                this.countVertices(thisC+thatC);
+                final int thisL = this.extendVertices(thatC);
 
-                System.arraycopy(thatV,0,this.vertices,thisL,thatL);
+                VertexArrayConvert.Vertices(thatT,that.vertices,thatN,this.type,this.vertices,thisL);
             }
             return this;
 
@@ -255,16 +411,59 @@ public class VertexArray
             throw new IllegalStateException(this.type.toString());
         }
     }
-    public VertexArray transform(Matrix m){
+    /**
+     * Concatenate a translated copy of the vertex list, as an
+     * alternative to translating a clone.
+     */
+    public VertexArray add(VertexArray that, float dx, float dy, float dz){
+
+        if (this.type == that.type){
+            switch(this.type){
+            case Points:
+            case Lines:
+            case Triangles:
+            case Quads:
+                {
+                    final int thatL = (3 * that.countVertices);
+                    final int thisL = this.extendVertices(that.countVertices);
+
+                    final float[] thatV = that.vertices;
+                    final float[] thisV = this.vertices;
+
+                    for (int c0 = 0, c1 = thisL; c0 < thatL; c0 += 3, c1 += 3){
 
-        this.bounds = null;
+                        thisV[c1+X] = (thatV[c0+X] + dx);
+                        thisV[c1+Y] = (thatV[c0+Y] + dy);
+                        thisV[c1+Z] = (thatV[c0+Z] + dz);
+                    }
+                }
+                return this;
+
+            default:
+                throw new IllegalStateException(this.type.toString());
+            }
+        }
+        else {
+            final int from = this.countVertices;
 
-        float[] vertices = this.vertices;
+            this.add(that);
 
-        for (int index = 0, count = vertices.length; index < count; index += 3){
+            VertexArrayTransform.Translate(this.vertices,from,this.countVertices,dx,dy,dz);
 
-            m.transform(vertices,index);
+            return this;
         }
+    }
+    /**
+     * Transform vertices, and normals when in use.
+     * @see VertexArrayTransform
+     */
+    public VertexArray transform(Matrix m){
+
+        this.unshare();
+
+        this.dirty(0,this.countVertices,true,this.useNormals);
+
+        VertexArrayTransform.Apply(m,this);
 
         return this;
     }
@@ -272,16 +471,11 @@ public class VertexArray
 
         if (ZERO != dx || ZERO != dy || ZERO != dz){
 
-            this.bounds = null;
+            this.unshare();
 
-            float[] vertices = this.vertices;
-
-            for (int index = 0, count = vertices.length; index < count; ){
+            this.dirty(0,this.countVertices,true,false);
 
-                vertices[index++] += dx;
-                vertices[index++] += dy;
-                vertices[index++] += dz;
-            }
+            VertexArrayTransform.Translate(this.vertices,this.countVertices,dx,dy,dz);
         }
         return this;
     }
@@ -289,11 +483,13 @@ public class VertexArray
 
         if (ZERO != dx){
 
-            this.bounds = null;
+            this.unshare();
+
+            this.dirty(0,this.countVertices,true,false);
 
             float[] vertices = this.vertices;
 
-            for (int index = X, count = vertices.length; index < count; index += 3){
+            for (int index = X, count = (3 * this.countVertices); index < count; index += 3){
 
                 vertices[index] += dx;
             }
@@ -304,11 +500,13 @@ public class VertexArray
 
         if (ZERO != dy){
 
-            this.bounds = null;
+            this.unshare();
+
+            this.dirty(0,this.countVertices,true,false);
 
             float[] vertices = this.vertices;
 
-            for (int index = Y, count = vertices.length; index < count; index += 3){
+            for (int index = Y, count = (3 * this.countVertices); index < count; index += 3){
 
                 vertices[index] += dy;
             }
@@ -319,11 +517,13 @@ public class VertexArray
 
         if (ZERO != dz){
 
-            this.bounds = null;
+            this.unshare();
+
+            this.dirty(0,this.countVertices,true,false);
 
             float[] vertices = this.vertices;
 
-            for (int index = Z, count = vertices.length; index < count; index += 3){
+            for (int index = Z, count = (3 * this.countVertices); index < count; index += 3){
 
                 vertices[index] += dz;
             }
@@ -354,46 +554,129 @@ public class VertexArray
         return this.countVertices;
     }
     /**
-     * Redefine the buffer size, preserving data.
+     * Redefine the buffer size, preserving data.  Contraction
+     * retains capacity, and expansion beyond capacity reallocates to
+     * exactly the requested number of vertices.  Vertices exposed by
+     * expansion are zero.
      * @param count Number of vertices
      */
     public final VertexArray countVertices(int count){
         if (1 > count){
             this.bounds = null;
+            this.slabs = null;
+            this.boundingSphere = null;
+            this.orientedBounds = null;
             this.countVertices = 0;
-            this.vertices = new float[0];
             this.countFaces = CountFaces(this.type,0);
-            this.normals = null;
+
+            this.dirtyVertices.clear();
+            this.dirtyNormals.clear();
+            this.boundsDirty.clear();
+            this.redefine = true;
         }
-        else {
-            if (count != this.countVertices){
+        else if (count != this.countVertices){
+
+            final int thisC = this.countVertices;
+
+            if (count > this.capacity())
+
+                this.reallocate(count);
+
+            else if (count > thisC){
+
+                this.unshare();
+
+                java.util.Arrays.fill(this.vertices,(3 * thisC),(3 * count),ZERO);
+
+                if (null != this.normals)
+                    java.util.Arrays.fill(this.normals,(3 * thisC),(3 * count),ZERO);
+            }
+            if (count > thisC)
+
+                this.dirty(thisC,count,true,true);
+            else {
                 this.bounds = null;
-                {
-                    int many = Math.min(count,this.countVertices);
-                    float[] vertices = new float[3 * count];
-                    if (0 < many){
-                        many *= 3;
-                        System.arraycopy(this.vertices,0,vertices,0,many);
-                    }
-                    this.vertices = vertices;
-                }
-                this.countVertices = count;
-
-                this.countFaces = CountFaces(this.type,count);
-                if (0 < this.countFaces){
-                    int many = (null != this.normals)?(this.normals.length):(0);
-                    float[] normals = new float[this.vertices.length];
-                    if (0 < many){
-                        System.arraycopy(this.normals,0,normals,0,many);
-                    }
-                    this.normals = normals;
-                }
-                else
-                    this.normals = null;
+                this.slabs = null;
+                this.boundingSphere = null;
+                this.orientedBounds = null;
+                this.dirtyVertices.clip(count);
+                this.dirtyNormals.clip(count);
+                this.boundsDirty.clip(count);
+                this.redefine = true;
             }
+            this.countVertices = count;
+
+            this.countFaces = CountFaces(this.type,count);
+
+            if (0 < this.countFaces && null == this.normals)
+
+                this.normals = new float[this.vertices.length];
         }
         return this;
     }
+    /**
+     * @return Number of vertices available without reallocating the
+     * vertices and normals buffers
+     */
+    public final int capacity(){
+        return (this.vertices.length/3);
+    }
+    /**
+     * Expand capacity to at least the argument number of vertices,
+     * without changing the number of vertices.
+     * @param count Number of vertices
+     */
+    public final VertexArray ensureCapacity(int count){
+        if (count > this.capacity())
+            this.reallocate(count);
+        return this;
+    }
+    /**
+     * Contract capacity to the number of vertices.
+     */
+    public final VertexArray trimToSize(){
+        if (this.countVertices != this.capacity())
+            this.reallocate(this.countVertices);
+        return this;
+    }
+    /**
+     * Append vertices with amortized (geometric) growth of capacity,
+     * as employed by the various "add" operations.
+     * @param many Number of vertices to append
+     * @return Buffer offset of the first new vertex
+     */
+    protected final int extendVertices(int many){
+        final int thisC = this.countVertices;
+        final int count = (thisC + many);
+        final int capacity = this.capacity();
+        if (count > capacity)
+            this.reallocate(Math.max(count,(capacity + (capacity>>1) + 4)));
+
+        this.countVertices(count);
+
+        return (3 * thisC);
+    }
+    /**
+     * Replace the vertices and normals buffers, preserving data.
+     * @param capacity Number of vertices
+     */
+    private void reallocate(int capacity){
+        this.shared = false;
+
+        final int many = (3 * Math.min(capacity,this.countVertices));
+        {
+            float[] vertices = new float[3 * capacity];
+            if (0 < many)
+                System.arraycopy(this.vertices,0,vertices,0,many);
+            this.vertices = vertices;
+        }
+        if (null != this.normals){
+            float[] normals = new float[this.vertices.length];
+            if (0 < many)
+                System.arraycopy(this.normals,0,normals,0,many);
+            this.normals = normals;
+        }
+    }
     /**
      * @param index Vertex index
      * @return Copy of the three values in the referenced vertex.
@@ -420,13 +703,19 @@ public class VertexArray
      */
     public final VertexArray setVertex(int index, float[] vertex){
 
+        this.unshare();
+
         final int start = (3 * index);
 
         System.arraycopy(vertex,0,this.vertices,start,3);
+
+        this.dirty(index,(index + 1),true,false);
         return this;
     }
     public final VertexArray setVertex(int index, float x, float y, float z){
 
+        this.unshare();
+
         final int X = (3 * index);
         final int Y = (X + 1);
         final int Z = (Y + 1);
@@ -435,6 +724,7 @@ public class VertexArray
         this.vertices[Y] = y;
         this.vertices[Z] = z;
 
+        this.dirty(index,(index + 1),true,false);
         return this;
     }
     /**
@@ -445,9 +735,13 @@ public class VertexArray
      */
     public final VertexArray setVertex(int index, float[] vertex, int ofs){
 
+        this.unshare();
+
         final int start = (3 * index);
 
         System.arraycopy(vertex,ofs,this.vertices,start,3);
+
+        this.dirty(index,(index + 1),true,false);
         return this;
     }
     /**
@@ -460,10 +754,14 @@ public class VertexArray
      */
     public final VertexArray setVertices(int index, float[] vertex, int ofs, int count){
 
+        this.unshare();
+
         final int start = (3 * index);
         final int many = (3 * count);
 
         System.arraycopy(vertex,ofs,this.vertices,start,many);
+
+        this.dirty(index,(index + count),true,false);
         return this;
     }
     public final VertexArray addVertex(float x, float y, float z){
@@ -471,10 +769,7 @@ public class VertexArray
     }
     public final VertexArray addVertex(float[] vertex){
 
-        final int thisL = (this.vertices.length);
-        final int thisC = (thisL/3);
-
-        this.countVertices(thisC+1);
+        final int thisL = this.extendVertices(1);
 
         final int vertexL = Math.min(vertex.length,3);
 
@@ -484,12 +779,9 @@ public class VertexArray
     }
     public final VertexArray addVerticesXY(float[] vertex){
 
-        final int thisL = (this.vertices.length);
-        final int thisC = (thisL/3);
         final int vertexL = vertex.length;
         final int vertexC = (vertexL/2);
-
-        this.countVertices(thisC+vertexC);
+        final int thisL = this.extendVertices(vertexC);
 
         for (int c0 = 0, c1 = thisL, end1 = (thisL+vertexL); c1 < end1; c0 += 2, c1 += 3){
 
@@ -503,14 +795,11 @@ public class VertexArray
      */
     public final VertexArray addLinesXY(float[] source){
 
-        final int thisL = (this.vertices.length);
-        final int thisC = (thisL/3);
         final int sourceL = source.length;
         final int sourceC = (sourceL/2);
         final int targetC = (sourceC*2)-2;
         final int targetL = (targetC*3);
-
-        this.countVertices(thisC+targetC);
+        final int thisL = this.extendVertices(targetC);
 
         final int end0 = sourceL, end1 = (thisL+targetL);
 
@@ -531,14 +820,11 @@ public class VertexArray
      */
     public final VertexArray addLinesXYZ(float[] source){
 
-        final int thisL = (this.vertices.length);
-        final int thisC = (thisL/3);
         final int sourceL = source.length;
         final int sourceC = (sourceL/3);
         final int targetC = (sourceC*2)-2;
         final int targetL = (targetC*3);
-
-        this.countVertices(thisC+targetC);
+        final int thisL = this.extendVertices(targetC);
 
         final int end0 = sourceL, end1 = (thisL+targetL);
 
@@ -555,18 +841,20 @@ public class VertexArray
     }
     public final VertexArray addVerticesXYZ(float[] source){
 
-        final int thisL = (this.vertices.length);
-        final int thisC = (thisL/3);
         final int sourceL = source.length;
         final int sourceC = (sourceL/3);
+        final int thisL = this.extendVertices(sourceC);
 
-        this.countVertices(thisC+sourceC);
-
-        System.arraycopy(source,0,this.vertices,thisL,sourceL);
+        System.arraycopy(source,0,this.vertices,thisL,(3 * sourceC));
 
         return this;
     }
+    /**
+     * @return Vertices buffer trimmed to size
+     */
     public final float[] array(){
+        this.trimToSize();
+        this.unshare();
         return this.vertices;
     }
     public final boolean hasFaces(){
@@ -626,31 +914,49 @@ public class VertexArray
     public final VertexArray setNormal(int index, float[] vector){
         this.useNormals = true;
 
+        this.unshare();
+
         int start = (3 * index);
         System.arraycopy(vector,0,this.normals,start,3);
+
+        this.dirty(index,(index + 1),false,true);
         return this;
     }
     /**
      * Compute a normal for a face.
      * @param face Index from zero into faces.
+     * @see VertexArrayNormals
      */
     public final VertexArray computeNormal(int face){
-        this.useNormals = true;
 
-        int[] vertices = this.faceIndeces(face);
-        if (3 > vertices.length)
-            throw new IllegalStateException(this.type.toString());
-        else {
-            Vector va = new Vector(this.getVertex(vertices[0]));
-            Vector vb = new Vector(this.getVertex(vertices[1]));
-            Vector vc = new Vector(this.getVertex(vertices[2]));
-            float[] normal = va.normal(vb,vc).array();
-            this.setNormal(vertices[0],normal);
-            this.setNormal(vertices[1],normal);
-            this.setNormal(vertices[2],normal);
+        if (this.type.hasFaces()){
+
+            this.useNormals = true;
+
+            VertexArrayNormals.Flat(this.type,this.vertices,this.countVertices,face,this.normalsBuffer());
+
+            if (Type.Polygon == this.type)
+
+                this.dirty(0,this.countVertices,false,true);
+            else {
+                final int[] indeces = FaceIndeces(this.type,face);
+                int from = indeces[0], to = indeces[0];
+                for (int cc = 1; cc < indeces.length; cc++){
+                    from = Math.min(from,indeces[cc]);
+                    to = Math.max(to,indeces[cc]);
+                }
+                this.dirty(from,(to + 1),false,true);
+            }
             return this;
         }
+        else
+            throw new IllegalStateException(this.type.toString());
     }
+    /**
+     * Compute flat normals, skipping degenerate faces as in the joins
+     * of strips.
+     * @see VertexArrayNormals
+     */
     public final VertexArray computeNormals(){
 
         switch(this.type){
@@ -671,20 +977,10 @@ public class VertexArray
 
             this.useNormals = true;
 
-            for (int face = 0, count = this.countFaces; face < count; face++){
+            VertexArrayNormals.Flat(this.type,this.vertices,this.countVertices,this.normalsBuffer());
 
-                int[] vertices = this.faceIndeces(face);
+            this.dirty(0,this.countVertices,false,true);
 
-                Vector va = new Vector(this.getVertex(vertices[0]));
-                Vector vb = new Vector(this.getVertex(vertices[1]));
-                Vector vc = new Vector(this.getVertex(vertices[2]));
-
-                float[] normal = va.normal(vb,vc).array();
-
-                this.setNormal(vertices[0],normal);
-                this.setNormal(vertices[1],normal);
-                this.setNormal(vertices[2],normal);
-            }
             return this;
 
         case Path:
@@ -695,7 +991,50 @@ public class VertexArray
             throw new IllegalStateException(this.type.name());
         }
     }
+    /**
+     * Compute smooth normals, averaging face normals over vertices
+     * having identical positions.
+     * @param weight Contribution of a face to its vertices
+     * @param crease Angle in radians beyond which a face normal is
+     * excluded from a vertex normal, or PI for none
+     * @see VertexArrayNormals
+     */
+    public final VertexArray computeNormalsSmooth(VertexArrayNormals.Weight weight, float crease){
+
+        if (this.type.hasFaces()){
+
+            this.useNormals = true;
+
+            VertexArrayNormals.Smooth(this.type,this.vertices,this.countVertices,this.normalsBuffer(),
+                                      weight,crease);
+
+            this.dirty(0,this.countVertices,false,true);
+
+            return this;
+        }
+        else if (Type.Path == this.type)
+            throw new IllegalStateException("Convert path to triangles or lines");
+        else {
+            this.useNormals = false;
+            return this;
+        }
+    }
+    private float[] normalsBuffer(){
+        this.unshare();
+
+        float[] normals = this.normals;
+        if (null == normals){
+            normals = new float[this.vertices.length];
+            this.normals = normals;
+        }
+        return normals;
+    }
+    /**
+     * @return Normals buffer trimmed to size
+     */
     public final float[] normals(){
+        this.trimToSize();
+        this.unshare();
         return this.normals;
     }
     /**
@@ -707,242 +1046,220 @@ public class VertexArray
     public final int[] faceIndeces(int face){
         return FaceIndeces(this.type,face);
     }
+    /**
+     * @param thatType Conversion type
+     * @return New list of vertices of the conversion type
+     * @see VertexArrayConvert
+     */
     public final float[] vertices(Type thatType){
         if (null == thatType)
             throw new IllegalArgumentException();
 
         else if (thatType == this.type)
 
-            return this.vertices.clone();
+            return java.util.Arrays.copyOf(this.vertices,(3 * this.countVertices));
 
-        else if (this.type.hasFaces() && thatType.hasFaces()){
+        else if (Type.TriangleStrip == thatType && Type.Triangles == this.type)
 
-            final int thatCountVertices = CountVertices(thatType,this.type,this.countVertices);
+            return new Stripify(this).vertices();
 
-            float[] thatVertices = new float[3 * thatCountVertices];
+        else if (Type.TriangleStrip == thatType && this.type.hasFaces())
 
-            for (int face = 0, count = this.countFaces; face < count; face++){
+            return new Stripify(new VertexArray(Type.Triangles,this.vertices(Type.Triangles))).vertices();
 
-                float[] thisFace = this.getFace(face);
+        else if (VertexArrayConvert.Supported(thatType,this.type)){
 
-                switch(this.type){
-
-                case Triangles:
+            final float[] thatVertices = new float[3 * VertexArrayConvert.CountVertices(thatType,this.type,this.countVertices)];
 
-                    switch(thatType){
-
-                    case TriangleFan:
-                        throw new UnsupportedOperationException(String.format("From %s To %s",this.type,thatType));
-
-                    case TriangleStrip:{
-                        int[] next = FaceIndeces(thatType,face);
-                        if (0 == face){
-
-                            SetVertex(next[0], thisFace, 0, thatVertices);
-                            SetVertex(next[1], thisFace, 3, thatVertices);
-                            SetVertex(next[2], thisFace, 6, thatVertices);
-                        }
-                        else {
-                            int[] prev = FaceIndeces(thatType,(face-1));
-
-                            if (StripMatch(next,prev)){
-
-                                SetVertex(next[0], thisFace, 0, thatVertices);
-                                SetVertex(next[1], thisFace, 3, thatVertices);
-                                SetVertex(next[2], thisFace, 6, thatVertices);
-                            }
-                            else {
-                                /*
-                                 * Maybe this is a perspective to
-                                 * start from for looking into
-                                 *  http://steve.hollasch.net/cgindex/geometry/gridmesh.c
-                                 * See fv3/etc/gridmesh.c
-                                 */
-                                throw new UnsupportedOperationException(String.format("From %s To %s",this.type,thatType));
-                            }
-                        }
-                        break;
-                    }
-                    case Quads:
-                    case QuadStrip:
-                    case Polygon:
-                    case Path:
-                        throw new UnsupportedOperationException(String.format("From %s To %s",this.type,thatType));
-                    default:
-                        throw new IllegalStateException();
-                    }
-                    break;
-
-                case TriangleStrip:
-
-                    switch(thatType){
-
-                    case Triangles:{
-
-                        int[] next = FaceIndeces(thatType,face);
-                        SetVertex(next[0], thisFace, 0, thatVertices);
-                        SetVertex(next[1], thisFace, 3, thatVertices);
-                        SetVertex(next[2], thisFace, 6, thatVertices);
-                        break;
-                    }
-                    case TriangleFan:
-                    case Quads:
-                    case QuadStrip:
-                    case Polygon:
-                    case Path:
-                        throw new UnsupportedOperationException(String.format("From %s To %s",this.type,thatType));
-                    default:
-                        throw new IllegalStateException();
-                    }
-                    break;
+            VertexArrayConvert.Vertices(this.type,this.vertices,this.countVertices,thatType,thatVertices,0);
 
+            return thatVertices;
+        }
+        else if (Type.Path == this.type || Type.Path == thatType)
 
-                case TriangleFan:
-
-                    switch(thatType){
-
-                    case Triangles:{
-
-                        int[] indeces = FaceIndeces(thatType,face);
-                        SetVertex(indeces[0], thisFace, 0, thatVertices);
-                        SetVertex(indeces[1], thisFace, 3, thatVertices);
-                        SetVertex(indeces[2], thisFace, 6, thatVertices);
-                        break;
-                    }
-                    case TriangleStrip:{
-
-                        int[] indeces = FaceIndeces(thatType,face);
-                        SetVertex(indeces[0], thisFace, 0, thatVertices);
-                        SetVertex(indeces[1], thisFace, 3, thatVertices);
-                        SetVertex(indeces[2], thisFace, 6, thatVertices);
-                        break;
-                    }
-                    case Quads:
-                    case QuadStrip:
-                    case Polygon:
-                    case Path:
-                        throw new UnsupportedOperationException(String.format("From %s To %s",this.type,thatType));
-                    default:
-                        throw new IllegalStateException();
-                    }
-                    break;
-
-
-                case Quads:
-
-                    switch(thatType){
-
-                    case Triangles:{
-
-                        final int thatFaceA = (2 * face);
-                        final int thatFaceB = (thatFaceA + 1);
-
-                        int[] indeces;
+            throw new IllegalStateException("Convert path to triangles or lines");
+        else
+            throw new UnsupportedOperationException(String.format("From %s To %s",this.type,thatType));
+    }
+    /**
+     * Convert into a destination buffer.
+     * @param thatType Conversion type
+     * @param dst Destination having {@link
+     * VertexArrayConvert#CountVertices} vertices from the offset
+     * @param ofs Offset into destination
+     * @return Number of vertices in the destination
+     * @see VertexArrayConvert
+     */
+    public final int vertices(Type thatType, float[] dst, int ofs){
 
-                        indeces = FaceIndeces(thatType,thatFaceA);
-                        SetVertex(indeces[0], thisFace, 0, thatVertices);
-                        SetVertex(indeces[1], thisFace, 3, thatVertices);
-                        SetVertex(indeces[2], thisFace, 9, thatVertices);
+        return VertexArrayConvert.Vertices(this.type,this.vertices,this.countVertices,thatType,dst,ofs);
+    }
+    /**
+     * @param thatType Conversion type
+     * @return List of indeces into this vertex array for the
+     * conversion type
+     * @see VertexArrayConvert
+     */
+    public final int[] indeces(Type thatType){
 
-                        indeces = FaceIndeces(thatType,thatFaceB);
-                        SetVertex(indeces[0], thisFace, 3, thatVertices);
-                        SetVertex(indeces[1], thisFace, 6, thatVertices);
-                        SetVertex(indeces[2], thisFace, 9, thatVertices);
-                        break;
-                    }
-                    case TriangleStrip:
-                    case TriangleFan:
-                    case QuadStrip:
-                    case Polygon:
-                    case Path:
-                        throw new UnsupportedOperationException(String.format("From %s To %s",this.type,thatType));
-                    default:
-                        throw new IllegalStateException();
-                    }
-                    break;
+        final int[] re = new int[VertexArrayConvert.CountVertices(thatType,this.type,this.countVertices)];
 
+        VertexArrayConvert.Indeces(this.type,this.countVertices,thatType,re,0);
 
-                case QuadStrip:
+        return re;
+    }
+    /**
+     * Convert to an index list in a destination buffer.
+     * @param thatType Conversion type
+     * @param dst Destination having {@link
+     * VertexArrayConvert#CountVertices} indeces from the offset
+     * @param ofs Offset into destination
+     * @return Number of indeces in the destination
+     * @see VertexArrayConvert
+     */
+    public final int indeces(Type thatType, int[] dst, int ofs){
 
-                    switch(thatType){
+        return VertexArrayConvert.Indeces(this.type,this.countVertices,thatType,dst,ofs);
+    }
+    /**
+     * @return A new off heap staging copy of this vertex array for GL
+     * upload
+     */
+    public final VertexArrayStaging staging(VertexArrayStaging.Layout layout){
 
-                    case Triangles:{
+        return new VertexArrayStaging(layout,this);
+    }
+    /**
+     * @param staging Off heap staging copy to redefine from this
+     * vertex array, reusing its capacity
+     * @return Argument
+     */
+    public final VertexArrayStaging staging(VertexArrayStaging staging){
 
-                        final int thatFaceA = (2 * face);
-                        final int thatFaceB = (thatFaceA + 1);
+        return staging.define(this);
+    }
+    /**
+     * Convert triangles to a triangle strip.
+     * @return Strip with its statistics
+     * @see Stripify
+     */
+    public final Stripify stripify(){
+        switch(this.type){
+        case Triangles:
+            return new Stripify(this);
+        default:
+            throw new IllegalStateException(this.type.name());
+        }
+    }
+    public fv3.Bounds getBounds(){
+        fv3.Bounds bounds = this.bounds;
+        if (null == bounds){
+            bounds = this.computeBounds();
+            this.bounds = bounds;
+        }
+        return bounds;
+    }
+    /**
+     * @return Near minimal bounding sphere of the vertices
+     * @see BoundingSphere
+     */
+    public final BoundingSphere getBoundingSphere(){
+        BoundingSphere sphere = this.boundingSphere;
+        if (null == sphere){
+            sphere = new BoundingSphere(this.vertices,this.countVertices);
+            this.boundingSphere = sphere;
+        }
+        return sphere;
+    }
+    /**
+     * @return Oriented bounding box of the vertices on their
+     * principal axes
+     * @see OrientedBounds
+     */
+    public final OrientedBounds getOrientedBounds(){
+        OrientedBounds box = this.orientedBounds;
+        if (null == box){
+            box = new OrientedBounds(this.vertices,this.countVertices);
+            this.orientedBounds = box;
+        }
+        return box;
+    }
+    /**
+     * Recompute the cached bounds of blocks having modified vertices,
+     * and combine the cached bounds of all blocks.
+     */
+    private fv3.Bounds computeBounds(){
+        final int count = this.countVertices;
+        if (1 > count)
+            return new VertexArrayBounds(ZERO,ZERO,ZERO,ZERO,ZERO,ZERO);
+        else {
+            final VertexArrayDirty dirty = this.boundsDirty;
+            final int blocks = ((count + BoundsBlock - 1) / BoundsBlock);
+
+            float[] cache = this.boundsBlocks;
+            if (null == cache || cache.length < (6 * blocks)){
+                cache = new float[6 * (blocks + (blocks >> 1))];
+                this.boundsBlocks = cache;
+                dirty.clear().add(0,count);
+            }
+            else if (count != this.boundsCount){
+                /*
+                 * Recompute the last block of the lesser count, which
+                 * has changed in extent
+                 */
+                final int last = (Math.min(count,this.boundsCount) - 1);
+                dirty.add(Math.max(0,last),count);
+            }
+            this.boundsCount = count;
 
-                        int[] indeces;
+            final float[] vertices = this.vertices;
+            for (int range = 0, ranges = dirty.size(); range < ranges; range++){
 
-                        indeces = FaceIndeces(thatType,thatFaceA);
-                        SetVertex(indeces[0], thisFace, 0, thatVertices);
-                        SetVertex(indeces[1], thisFace, 3, thatVertices);
-                        SetVertex(indeces[2], thisFace, 9, thatVertices);
+                final int first = (dirty.from(range) / BoundsBlock);
+                final int last = Math.min(blocks,((dirty.to(range) + BoundsBlock - 1) / BoundsBlock));
 
-                        indeces = FaceIndeces(thatType,thatFaceB);
-                        SetVertex(indeces[0], thisFace, 3, thatVertices);
-                        SetVertex(indeces[1], thisFace, 6, thatVertices);
-                        SetVertex(indeces[2], thisFace, 9, thatVertices);
-                        break;
-                    }
-                    case TriangleStrip:
-                        throw new UnsupportedOperationException(String.format("From %s To %s",this.type,thatType));
-                    case TriangleFan:
-                        throw new UnsupportedOperationException(String.format("From %s To %s",this.type,thatType));
-
-                    case Quads:{
-
-                        int[] indeces = FaceIndeces(thatType,face);
-                        SetVertex(indeces[0], thisFace, 0, thatVertices);
-                        SetVertex(indeces[1], thisFace, 3, thatVertices);
-                        SetVertex(indeces[2], thisFace, 6, thatVertices);
-                        SetVertex(indeces[3], thisFace, 9, thatVertices);
-                        break;
-                    }
-                    case Polygon:
-                    case Path:
-                        throw new UnsupportedOperationException(String.format("From %s To %s",this.type,thatType));
-                    default:
-                        throw new IllegalStateException();
-                    }
-                    break;
+                for (int block = first; block < last; block++){
 
+                    final int from = (3 * block * BoundsBlock);
+                    final int to = (3 * Math.min(count,((block + 1) * BoundsBlock)));
 
-                case Polygon:
-                case Path:
+                    float minX = vertices[from+X], maxX = minX;
+                    float minY = vertices[from+Y], maxY = minY;
+                    float minZ = vertices[from+Z], maxZ = minZ;
 
-                    switch(thatType){
-
-                    case Triangles:
-                        throw new UnsupportedOperationException(String.format("From %s To %s",this.type,thatType));
-                    case TriangleStrip:
-                        throw new UnsupportedOperationException(String.format("From %s To %s",this.type,thatType));
-                    case TriangleFan:
-                        throw new UnsupportedOperationException(String.format("From %s To %s",this.type,thatType));
-                    case Quads:
-                        throw new UnsupportedOperationException(String.format("From %s To %s",this.type,thatType));
-                    case QuadStrip:
-                        throw new UnsupportedOperationException(String.format("From %s To %s",this.type,thatType));
-                    default:
-                        throw new IllegalStateException();
+                    for (int ofs = (from + 3); ofs < to; ofs += 3){
+                        final float x = vertices[ofs+X];
+                        final float y = vertices[ofs+Y];
+                        final float z = vertices[ofs+Z];
+                        if (x < minX) minX = x; else if (x > maxX) maxX = x;
+                        if (y < minY) minY = y; else if (y > maxY) maxY = y;
+                        if (z < minZ) minZ = z; else if (z > maxZ) maxZ = z;
                     }
-                    //break;
-
-                default:
-                    throw new IllegalStateException();
+                    final int b = (6 * block);
+                    cache[b] = minX;
+                    cache[b+1] = maxX;
+                    cache[b+2] = minY;
+                    cache[b+3] = maxY;
+                    cache[b+4] = minZ;
+                    cache[b+5] = maxZ;
                 }
             }
-            return thatVertices;
-        }
-        else
-            throw new IllegalStateException("[TODO] additional conversions");
-    }
-    public fv3.Bounds getBounds(){
-        fv3.Bounds bounds = this.bounds;
-        if (null == bounds){
-            bounds = new VertexArrayBounds(this);
-            this.bounds = bounds;
+            dirty.clear();
+
+            float minX = cache[0], maxX = cache[1];
+            float minY = cache[2], maxY = cache[3];
+            float minZ = cache[4], maxZ = cache[5];
+
+            for (int b = 6, end = (6 * blocks); b < end; b += 6){
+                minX = Math.min(minX,cache[b]);
+                maxX = Math.max(maxX,cache[b+1]);
+                minY = Math.min(minY,cache[b+2]);
+                maxY = Math.max(maxY,cache[b+3]);
+                minZ = Math.min(minZ,cache[b+4]);
+                maxZ = Math.max(maxZ,cache[b+5]);
+            }
+            return new VertexArrayBounds(minX,maxX,minY,maxY,minZ,maxZ);
         }
-        return bounds;
     }
     public float getBoundsMinX(){
         return this.getBounds().getBoundsMinX();
@@ -1193,7 +1510,7 @@ public class VertexArray
 
             final float[] vertices = this.vertices;
 
-            for (int vertex = 0, count = vertices.length; vertex < count; ){
+            for (int vertex = 0, count = (3 * this.countVertices); vertex < count; ){
 
                 string.append(in);
                 string.append(pr);
@@ -1475,6 +1792,20 @@ public class VertexArray
             throw new IllegalStateException(type.name());
         }
     }
+    /**
+     * @return Two of the three vertices are identical
+     */
+    public final static boolean Degenerate(float[] vertices, int a, int b, int c){
+        final int ao = (3 * a), bo = (3 * b), co = (3 * c);
+
+        final float ax = vertices[ao], ay = vertices[ao+1], az = vertices[ao+2];
+        final float bx = vertices[bo], by = vertices[bo+1], bz = vertices[bo+2];
+        final float cx = vertices[co], cy = vertices[co+1], cz = vertices[co+2];
+
+        return ((ax == bx && ay == by && az == bz) ||
+                (bx == cx && by == cy && bz == cz) ||
+                (cx == ax && cy == ay && cz == az));
+    }
     public final static void SetVertex(int index, float[] vertex, int ofs, float[] vertices){
 
         final int start = (3 * index);
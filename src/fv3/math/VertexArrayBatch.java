@@ -0,0 +1,340 @@
+/*
+ * fv3.math
+ * Copyright (C) 2012, John Pritchard, all rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fv3.math;
+
+import fv3.math.VertexArray.Type;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Static batch of many parts, each a vertex array with an optional
+ * matrix, merged into one vertex array for one draw call.
+ *
+ * <p> The {@link #build} operation sizes the merged vertex array once,
+ * and converts and transforms the vertices and normals of each part
+ * directly into its sub range of the merged buffers.  Parts are
+ * partitioned across processors for batches of at least {@link
+ * VertexArrayTransform#Parallel} vertices. </p>
+ *
+ * <p> Parts having no normals receive flat normals.  The sub range
+ * of each part is retained for picking ({@link #pick}) and for
+ * drawing visible parts ({@link #visible(int[])}). </p>
+ *
+ * @see VertexArrayConvert
+ * @see VertexArrayTransform
+ * @author jdp
+ */
+public class VertexArrayBatch
+    extends Abstract
+{
+
+    public final Type type;
+
+    private VertexArray[] parts = new VertexArray[16];
+
+    private Matrix[] matrices = new Matrix[16];
+
+    private int countParts;
+    /**
+     * Sub range of part (p) is <i>[offsets[p], offsets[p+1])</i>
+     */
+    private int[] offsets;
+
+    private boolean[] hidden;
+
+    private VertexArray array;
+
+
+    /**
+     * @param type One of Points, Lines, Triangles or Quads
+     */
+    public VertexArrayBatch(Type type){
+        super();
+        if (null == type)
+            throw new IllegalArgumentException();
+        else {
+            switch(type){
+            case Points:
+            case Lines:
+            case Triangles:
+            case Quads:
+                this.type = type;
+                break;
+            default:
+                throw new IllegalArgumentException(type.name());
+            }
+        }
+    }
+
+
+    /**
+     * @param part Vertex array convertible to the type of this batch
+     * @param m Optional transform, null for none
+     * @return Index of the part
+     */
+    public final int add(VertexArray part, Matrix m){
+        if (null == part)
+            throw new IllegalArgumentException();
+        else if (!VertexArrayConvert.Supported(this.type,part.type))
+            throw new IllegalArgumentException(String.format("From %s To %s",part.type,this.type));
+        else {
+            final int index = this.countParts;
+            if (index == this.parts.length){
+                final int length = (index << 1);
+                this.parts = java.util.Arrays.copyOf(this.parts,length);
+                this.matrices = java.util.Arrays.copyOf(this.matrices,length);
+            }
+            this.parts[index] = part;
+            this.matrices[index] = m;
+            this.countParts = (index + 1);
+            this.offsets = null;
+            this.hidden = null;
+            this.array = null;
+            return index;
+        }
+    }
+    public final int countParts(){
+        return this.countParts;
+    }
+    public final VertexArray getPart(int part){
+        if (-1 < part && part < this.countParts)
+            return this.parts[part];
+        else
+            throw new IllegalArgumentException(String.valueOf(part));
+    }
+    public final Matrix getMatrix(int part){
+        if (-1 < part && part < this.countParts)
+            return this.matrices[part];
+        else
+            throw new IllegalArgumentException(String.valueOf(part));
+    }
+    /**
+     * @return Merged vertex array, or null before {@link #build}
+     */
+    public final VertexArray getArray(){
+        return this.array;
+    }
+    /**
+     * Merge, in parallel for batches of at least {@link
+     * VertexArrayTransform#Parallel} vertices.
+     */
+    public final VertexArray build(){
+        return this.build(true);
+    }
+    /**
+     * @param parallel Permit partitioning across processors
+     * @return Merged vertex array
+     */
+    public final VertexArray build(boolean parallel){
+        final int countParts = this.countParts;
+        final Type type = this.type;
+        /*
+         * Size once
+         */
+        final int[] offsets = new int[countParts + 1];
+        for (int p = 0; p < countParts; p++){
+
+            offsets[p+1] = offsets[p] + VertexArrayConvert.CountVertices(type,this.parts[p].type,Count(type,this.parts[p]));
+        }
+        final int count = offsets[countParts];
+
+        final VertexArray array = new VertexArray(type,count);
+        final float[] vertices = array.vertices;
+        final float[] normals = array.normals;
+        if (null != normals)
+            array.useNormals = true;
+
+        if (!parallel || count < VertexArrayTransform.Parallel || 1 == VertexArrayTransform.Processors || 1 == countParts){
+
+            for (int p = 0; p < countParts; p++)
+                this.part(p,offsets,vertices,normals,count);
+        }
+        else {
+            /*
+             * Partition parts by vertex count
+             */
+            final int parts = Math.min(VertexArrayTransform.Processors,countParts);
+            final int size = ((count + parts - 1) / parts);
+
+            Callable<?>[] tasks = new Callable<?>[parts];
+            int task = 0;
+            for (int p = 0, first = 0; p < countParts; p++){
+
+                if ((countParts - 1) == p ||
+                    ((task < (parts - 1)) && size <= (offsets[p+1] - offsets[first])))
+                {
+                    final int from = first;
+                    final int to = (p + 1);
+
+                    tasks[task++] = new Callable<Object>(){
+                            public Object call(){
+                                for (int cc = from; cc < to; cc++)
+                                    VertexArrayBatch.this.part(cc,offsets,vertices,normals,count);
+                                return null;
+                            }
+                        };
+                    first = to;
+                }
+            }
+            if (task < parts)
+                tasks = java.util.Arrays.copyOf(tasks,task);
+
+            VertexArrayTransform.Fork(tasks);
+        }
+        this.offsets = offsets;
+        this.hidden = new boolean[countParts];
+        this.array = array;
+        return array;
+    }
+    /**
+     * @param part Part index
+     * @return First vertex of the part in the merged vertex array
+     */
+    public final int from(int part){
+        return this.offsets()[part];
+    }
+    /**
+     * @param part Part index
+     * @return Last vertex of the part in the merged vertex array,
+     * exclusive
+     */
+    public final int to(int part){
+        return this.offsets()[part+1];
+    }
+    /**
+     * @param vertex Vertex index in the merged vertex array, as from
+     * a face index in picking
+     * @return Part index, or negative one
+     */
+    public final int pick(int vertex){
+        final int[] offsets = this.offsets();
+        if (-1 < vertex && vertex < offsets[this.countParts]){
+            int lo = 0, hi = (this.countParts - 1);
+            while (lo < hi){
+                final int mid = ((lo + hi + 1) >>> 1);
+                if (offsets[mid] <= vertex)
+                    lo = mid;
+                else
+                    hi = (mid - 1);
+            }
+            return lo;
+        }
+        else
+            return -1;
+    }
+    public final boolean isVisible(int part){
+        this.offsets();
+        return (!this.hidden[part]);
+    }
+    public final VertexArrayBatch setVisible(int part, boolean visible){
+        this.offsets();
+        this.hidden[part] = (!visible);
+        return this;
+    }
+    /**
+     * Ranges of visible parts, joining neighbors, as for
+     * <code>glMultiDrawArrays</code>.
+     * @param firstCount Destination for <i>(first,count)*</i> having
+     * at least two elements per part
+     * @return Number of ranges
+     */
+    public final int visible(int[] firstCount){
+        final int[] offsets = this.offsets();
+        final boolean[] hidden = this.hidden;
+        int ranges = 0;
+        for (int p = 0, count = this.countParts; p < count; p++){
+            if (!hidden[p] && offsets[p] < offsets[p+1]){
+                final int first = offsets[p];
+                if (0 < ranges && first == (firstCount[(2 * ranges) - 2] + firstCount[(2 * ranges) - 1]))
+
+                    firstCount[(2 * ranges) - 1] += (offsets[p+1] - first);
+                else {
+                    firstCount[2 * ranges] = first;
+                    firstCount[(2 * ranges) + 1] = (offsets[p+1] - first);
+                    ranges += 1;
+                }
+            }
+        }
+        return ranges;
+    }
+    private int[] offsets(){
+        int[] offsets = this.offsets;
+        if (null != offsets)
+            return offsets;
+        else
+            throw new IllegalStateException("Not built");
+    }
+    /**
+     * Convert and transform a part into its sub range.
+     */
+    private void part(int p, int[] offsets, float[] vertices, float[] normals, int count){
+        final Type type = this.type;
+        final VertexArray part = this.parts[p];
+        final Matrix m = this.matrices[p];
+        final int from = offsets[p];
+        final int to = offsets[p+1];
+        final int partCount = Count(type,part);
+
+        VertexArrayConvert.Vertices(part.type,part.vertices,partCount,type,vertices,(3 * from));
+
+        final boolean partNormals = (null != normals && part.useNormals && null != part.normals);
+        if (partNormals)
+            VertexArrayConvert.Vertices(part.type,part.normals,partCount,type,normals,(3 * from));
+
+        if (null != m){
+            final float[] mm = m.array();
+
+            VertexArrayTransform.Vertices(mm,vertices,from,to);
+
+            if (partNormals){
+                final float[] n = VertexArrayTransform.Normal(mm);
+                if (null != n)
+                    VertexArrayTransform.Normals(n,normals,from,to);
+            }
+        }
+        if (null != normals && !partNormals){
+            final int corners = ((Type.Quads == type)?(4):(3));
+            for (int face = (from / corners), end = (to / corners); face < end; face++){
+
+                VertexArrayNormals.Flat(type,vertices,count,face,normals);
+            }
+        }
+    }
+    /**
+     * @return Number of vertices of the part for conversion, trimmed
+     * to whole primitives of the same type
+     */
+    private final static int Count(Type type, VertexArray part){
+        final int count = part.countVertices;
+        if (type == part.type){
+            switch(type){
+            case Lines:
+                return (count & ~1);
+            case Triangles:
+                return (3 * (count / 3));
+            case Quads:
+                return (4 * (count / 4));
+            default:
+                return count;
+            }
+        }
+        else
+            return count;
+    }
+}
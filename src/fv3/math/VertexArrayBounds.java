@@ -69,6 +69,22 @@ public class VertexArrayBounds
         this.midY = (minY + maxY)/2.0f;
         this.midZ = (minZ + maxZ)/2.0f;
     }
+    public VertexArrayBounds(float minX, float maxX,
+                             float minY, float maxY,
+                             float minZ, float maxZ)
+    {
+        super();
+        this.maxX = maxX;
+        this.minX = minX;
+        this.maxY = maxY;
+        this.minY = minY;
+        this.maxZ = maxZ;
+        this.minZ = minZ;
+
+        this.midX = (minX + maxX)/2.0f;
+        this.midY = (minY + maxY)/2.0f;
+        this.midZ = (minZ + maxZ)/2.0f;
+    }
 
 
     public float getBoundsMinX(){
@@ -0,0 +1,330 @@
+/*
+ * fv3.math
+ * Copyright (C) 2012, John Pritchard, all rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fv3.math;
+
+import fv3.math.VertexArray.Type;
+
+/**
+ * Primitive type conversion by index arithmetic.
+ *
+ * <p> The {@link #Index} function maps each vertex of the converted
+ * list to a vertex of the source list, so that conversion is either
+ * an index list ({@link #Indeces}) or a gather of vertices ({@link
+ * #Vertices}) into a destination buffer, without intermediate
+ * allocation.  Faces are decomposed with the corner order of {@link
+ * VertexArray#FaceIndeces}. </p>
+ *
+ * <h3>Conversions</h3>
+ *
+ * <ul>
+ * <li> Every type except Path to {@link Type#Points Points}. </li>
+ *
+ * <li> Every type except Path to {@link Type#Lines Lines}: line
+ * strips and loops to segments, and faces to their edges. </li>
+ *
+ * <li> Every face type to {@link Type#Triangles Triangles}: quads as
+ * <i>(a,b,d), (b,c,d)</i>, and polygons as fans. </li>
+ *
+ * <li> {@link Type#QuadStrip QuadStrip} to {@link Type#Quads
+ * Quads}. </li>
+ * </ul>
+ *
+ * <p> Conversion to {@link Type#TriangleStrip TriangleStrip} is
+ * performed by {@link Stripify}.  Other conversions have no index
+ * arithmetic, as from triangles to quads, and are not supported.
+ * </p>
+ *
+ * @see VertexArray#vertices(VertexArray.Type)
+ * @see VertexArray#indeces(VertexArray.Type)
+ * @author jdp
+ */
+public final class VertexArrayConvert
+    extends Abstract
+{
+    /**
+     * Triangle corners of a quad
+     */
+    private final static int[] QuadTriangles = {0, 1, 3, 1, 2, 3};
+
+
+    /**
+     * @param to Destination type
+     * @param from Source type
+     * @return Conversion is defined
+     */
+    public final static boolean Supported(Type to, Type from){
+        if (Type.Path == from || Type.Path == to)
+            return false;
+        else if (to == from)
+            return true;
+        else {
+            switch(to){
+            case Points:
+            case Lines:
+                return true;
+            case Triangles:
+                return from.hasFaces();
+            case Quads:
+                return (Type.QuadStrip == from);
+            default:
+                return false;
+            }
+        }
+    }
+    /**
+     * @param to Destination type
+     * @param from Source type
+     * @param count Number of source vertices
+     * @return Number of destination vertices or indeces
+     * @exception java.lang.UnsupportedOperationException For an
+     * unsupported conversion
+     */
+    public final static int CountVertices(Type to, Type from, int count){
+        if (!Supported(to,from))
+            throw new UnsupportedOperationException(String.format("From %s To %s",from,to));
+        else if (1 > count)
+            return 0;
+        else if (to == from)
+            return count;
+        else {
+            switch(to){
+            case Points:
+                return count;
+
+            case Lines:
+                switch(from){
+                case Lines:
+                    return (count & ~1);
+                case LineStrip:
+                    return (2 * (count - 1));
+                case LineLoop:
+                    return ((1 < count)?(2 * count):(0));
+                case Points:
+                    return 0;
+                case Polygon:
+                    return ((2 < count)?(2 * count):(0));
+                default:
+                    return (2 * Corners(from,count) * Faces(from,count));
+                }
+
+            case Triangles:
+                switch(from){
+                case Quads:
+                case QuadStrip:
+                    return (6 * Faces(from,count));
+                default:
+                    return (3 * Faces(from,count));
+                }
+
+            case Quads:
+                return (4 * Faces(from,count));
+
+            default:
+                throw new IllegalStateException(to.name());
+            }
+        }
+    }
+    /**
+     * @param from Source type
+     * @param count Number of source vertices
+     * @param to Destination type
+     * @param index Destination vertex index, from zero to {@link
+     * #CountVertices}
+     * @return Source vertex index
+     */
+    public final static int Index(Type from, int count, Type to, int index){
+        if (to == from || Type.Points == to)
+            return index;
+        else {
+            switch(to){
+            case Lines:
+                switch(from){
+                case LineStrip:
+                    return ((index >> 1) + (index & 1));
+                case LineLoop:
+                    return (((index >> 1) + (index & 1)) % count);
+                default:{
+                    /*
+                     * Edge (e) of face (f) from corner (e) to corner
+                     * (e+1)
+                     */
+                    final int corners = Corners(from,count);
+                    final int face = (index / (2 * corners));
+                    final int edge = ((index % (2 * corners)) >> 1);
+                    final int corner = ((edge + (index & 1)) % corners);
+
+                    return Corner(from,count,face,corner);
+                }
+                }
+
+            case Triangles:
+                switch(from){
+                case Quads:
+                case QuadStrip:
+                    return Corner(from,count,(index / 6),QuadTriangles[index % 6]);
+
+                case Polygon:
+                    return Corner(Type.TriangleFan,count,(index / 3),(index % 3));
+
+                default:
+                    return Corner(from,count,(index / 3),(index % 3));
+                }
+
+            case Quads:
+                return Corner(from,count,(index >> 2),(index & 3));
+
+            default:
+                throw new UnsupportedOperationException(String.format("From %s To %s",from,to));
+            }
+        }
+    }
+    /**
+     * @param type Face type
+     * @param count Number of vertices
+     * @param face Face index
+     * @param corner Corner index in the order of {@link
+     * VertexArray#FaceIndeces}
+     * @return Vertex index
+     */
+    public final static int Corner(Type type, int count, int face, int corner){
+        switch(type){
+        case Triangles:
+            return ((3 * face) + corner);
+
+        case TriangleStrip:
+            if (1 == (face & 1) || 1 < corner)
+                return (face + corner);
+            else
+                return (face + (1 - corner));
+
+        case TriangleFan:
+            if (0 == corner)
+                return 0;
+            else
+                return (face + corner);
+
+        case Quads:
+            return ((4 * face) + corner);
+
+        case QuadStrip:{
+            final int n = (2 * face);
+            switch(corner){
+            case 0:
+                return n;
+            case 1:
+                return (n + 1);
+            case 2:
+                return (n + 3);
+            default:
+                return (n + 2);
+            }
+        }
+        case Polygon:
+            return corner;
+
+        default:
+            throw new IllegalStateException(type.name());
+        }
+    }
+    /**
+     * Write the source vertex indeces of a conversion.
+     * @param from Source type
+     * @param count Number of source vertices
+     * @param to Destination type
+     * @param dst Destination having {@link #CountVertices} from the
+     * offset
+     * @param ofs Offset into destination
+     * @return Number of indeces
+     */
+    public final static int Indeces(Type from, int count, Type to, int[] dst, int ofs){
+
+        final int many = CountVertices(to,from,count);
+
+        if (to == from || Type.Points == to){
+
+            for (int cc = 0; cc < many; cc++)
+                dst[ofs+cc] = cc;
+        }
+        else {
+            for (int cc = 0; cc < many; cc++)
+                dst[ofs+cc] = Index(from,count,to,cc);
+        }
+        return many;
+    }
+    /**
+     * Gather the source vertices of a conversion.
+     * @param from Source type
+     * @param src Source <i>(X,Y,Z)*</i>
+     * @param count Number of source vertices
+     * @param to Destination type
+     * @param dst Destination having {@link #CountVertices} vertices
+     * from the offset
+     * @param ofs Offset into destination
+     * @return Number of destination vertices
+     */
+    public final static int Vertices(Type from, float[] src, int count, Type to, float[] dst, int ofs){
+
+        final int many = CountVertices(to,from,count);
+
+        if (to == from || Type.Points == to)
+
+            System.arraycopy(src,0,dst,ofs,(3 * many));
+        else {
+            for (int cc = 0, o = ofs; cc < many; cc++, o += 3){
+
+                final int s = (3 * Index(from,count,to,cc));
+
+                dst[o+X] = src[s+X];
+                dst[o+Y] = src[s+Y];
+                dst[o+Z] = src[s+Z];
+            }
+        }
+        return many;
+    }
+    /**
+     * @return Number of corners in each face of the type
+     */
+    private final static int Corners(Type type, int count){
+        switch(type){
+        case Quads:
+        case QuadStrip:
+            return 4;
+        case Polygon:
+            return count;
+        default:
+            return 3;
+        }
+    }
+    /**
+     * @return Number of whole faces
+     */
+    private final static int Faces(Type type, int count){
+        switch(type){
+        case Polygon:
+            return ((2 < count)?(count - 2):(0));
+        default:
+            return Math.max(0,VertexArray.CountFaces(type,count));
+        }
+    }
+
+
+    private VertexArrayConvert(){
+        super();
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * fv3.math
+ * Copyright (C) 2012, John Pritchard, all rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fv3.math;
+
+/**
+ * Ordered set of disjoint vertex index ranges modified since the set
+ * was last cleared.
+ *
+ * <p> Ranges are half open, <i>[from, to)</i>.  Overlapping and
+ * adjacent ranges are merged on {@link #add}.  Beyond {@link #Limit}
+ * ranges, the two ranges having the least gap between them are
+ * coalesced, so that a consumer issues a bounded number of sub range
+ * updates. </p>
+ *
+ * @see VertexArray#dirtyVertices()
+ * @see VertexArray#dirtyNormals()
+ * @author jdp
+ */
+public class VertexArrayDirty
+    extends java.lang.Object
+{
+    /**
+     * Maximum number of ranges
+     */
+    public final static int Limit = 16;
+
+
+    /**
+     * List of <i>(from, to)*</i>
+     */
+    private final int[] list = new int[2 * (Limit + 1)];
+
+    private int size;
+
+
+    public VertexArrayDirty(){
+        super();
+    }
+    public VertexArrayDirty(VertexArrayDirty copy){
+        super();
+        if (null != copy){
+            System.arraycopy(copy.list,0,this.list,0,(2 * copy.size));
+            this.size = copy.size;
+        }
+    }
+
+
+    public final boolean isEmpty(){
+        return (0 == this.size);
+    }
+    public final boolean isNotEmpty(){
+        return (0 != this.size);
+    }
+    /**
+     * @return Number of ranges
+     */
+    public final int size(){
+        return this.size;
+    }
+    /**
+     * @param index Range index
+     * @return First vertex index in the range, inclusive
+     */
+    public final int from(int index){
+        if (-1 < index && index < this.size)
+            return this.list[2 * index];
+        else
+            throw new IllegalArgumentException(String.valueOf(index));
+    }
+    /**
+     * @param index Range index
+     * @return Last vertex index in the range, exclusive
+     */
+    public final int to(int index){
+        if (-1 < index && index < this.size)
+            return this.list[(2 * index) + 1];
+        else
+            throw new IllegalArgumentException(String.valueOf(index));
+    }
+    /**
+     * @return Least vertex index, or zero when empty
+     */
+    public final int min(){
+        if (0 == this.size)
+            return 0;
+        else
+            return this.list[0];
+    }
+    /**
+     * @return Greatest vertex index exclusive, or zero when empty
+     */
+    public final int max(){
+        if (0 == this.size)
+            return 0;
+        else
+            return this.list[(2 * this.size) - 1];
+    }
+    /**
+     * @return Number of vertices in all ranges
+     */
+    public final int countVertices(){
+        final int[] list = this.list;
+        int count = 0;
+        for (int cc = 0, end = (2 * this.size); cc < end; cc += 2){
+            count += (list[cc+1] - list[cc]);
+        }
+        return count;
+    }
+    public final VertexArrayDirty clear(){
+        this.size = 0;
+        return this;
+    }
+    /**
+     * Add a range, merging it with the ranges it overlaps or adjoins.
+     * @param from First vertex index, inclusive
+     * @param to Last vertex index, exclusive
+     */
+    public final VertexArrayDirty add(int from, int to){
+        if (0 > from)
+            from = 0;
+
+        if (from < to){
+            final int[] list = this.list;
+            final int size = this.size;
+            /*
+             * First range ending at or after (from), and first range
+             * starting after (to)
+             */
+            int first = 0;
+            while (first < size && list[(2 * first) + 1] < from)
+                first++;
+
+            int last = first;
+            while (last < size && list[2 * last] <= to)
+                last++;
+
+            if (first < last){
+                /*
+                 * Merge ranges [first, last) with the argument
+                 */
+                from = Math.min(from,list[2 * first]);
+                to = Math.max(to,list[(2 * last) - 1]);
+
+                list[2 * first] = from;
+                list[(2 * first) + 1] = to;
+
+                final int drop = (last - first - 1);
+                if (0 < drop){
+                    System.arraycopy(list,(2 * last),list,(2 * (first + 1)),(2 * (size - last)));
+                    this.size = (size - drop);
+                }
+            }
+            else {
+                /*
+                 * Insert at (first)
+                 */
+                System.arraycopy(list,(2 * first),list,(2 * (first + 1)),(2 * (size - first)));
+                list[2 * first] = from;
+                list[(2 * first) + 1] = to;
+                this.size = (size + 1);
+
+                if (Limit < this.size)
+                    this.coalesce();
+            }
+        }
+        return this;
+    }
+    /**
+     * Add the ranges of the argument.
+     */
+    public final VertexArrayDirty add(VertexArrayDirty that){
+        if (null != that && this != that){
+            final int[] list = that.list;
+            for (int cc = 0, end = (2 * that.size); cc < end; cc += 2){
+
+                this.add(list[cc],list[cc+1]);
+            }
+        }
+        return this;
+    }
+    /**
+     * Drop vertex indeces at or beyond the argument, as following a
+     * contraction of the vertex array.
+     * @param count Number of vertices
+     */
+    public final VertexArrayDirty clip(int count){
+        final int[] list = this.list;
+        int size = this.size;
+        while (0 < size && count <= list[2 * (size - 1)])
+            size -= 1;
+
+        if (0 < size && count < list[(2 * size) - 1])
+            list[(2 * size) - 1] = count;
+
+        this.size = size;
+        return this;
+    }
+    /**
+     * Merge the pair of neighboring ranges having the least gap.
+     */
+    private void coalesce(){
+        final int[] list = this.list;
+        final int size = this.size;
+        int least = 0, gap = Integer.MAX_VALUE;
+        for (int cc = 0, end = (size - 1); cc < end; cc++){
+            final int g = (list[2 * (cc + 1)] - list[(2 * cc) + 1]);
+            if (g < gap){
+                gap = g;
+                least = cc;
+            }
+        }
+        list[(2 * least) + 1] = list[(2 * (least + 1)) + 1];
+
+        System.arraycopy(list,(2 * (least + 2)),list,(2 * (least + 1)),(2 * (size - least - 2)));
+        this.size = (size - 1);
+    }
+    public String toString(){
+        StringBuilder string = new StringBuilder();
+        final int[] list = this.list;
+        for (int cc = 0, end = (2 * this.size); cc < end; cc += 2){
+            if (0 < cc)
+                string.append(',');
+            string.append('[');
+            string.append(list[cc]);
+            string.append(',');
+            string.append(list[cc+1]);
+            string.append(')');
+        }
+        return string.toString();
+    }
+}
@@ -0,0 +1,468 @@
+/*
+ * fv3.math
+ * Copyright (C) 2012, John Pritchard, all rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fv3.math;
+
+/**
+ * Normal generation kernels over the <i>(X,Y,Z)*</i> vertices and
+ * normals buffers of a {@link VertexArray}.
+ *
+ * <h3>Flat</h3>
+ *
+ * <p> Each face normal is written to the vertices of the face in face
+ * order, so that a vertex shared by faces (as in strips and fans)
+ * has the normal of the last face.  Degenerate faces are skipped.
+ * No objects are allocated per face. </p>
+ *
+ * <h3>Smooth</h3>
+ *
+ * <p> Vertices having identical positions share the face normals of
+ * their faces, weighted by the angle of the face corner or the area
+ * of the face.  A face normal contributes to a vertex only when it
+ * is within the crease angle of the normal of the face owning the
+ * vertex (the last face, as in flat normals). </p>
+ *
+ * @see VertexArray#computeNormals()
+ * @see VertexArray#computeNormalsSmooth
+ * @author jdp
+ */
+public final class VertexArrayNormals
+    extends Abstract
+{
+    public enum Weight {
+        Angle, Area;
+    }
+
+
+    /**
+     * @param type Vertex array type
+     * @param countVertices Number of vertices in the vertex array
+     * @param face Face index
+     * @param list Destination for the face vertex indeces, at least
+     * four, or the number of vertices for a polygon
+     * @return Number of face vertex indeces written to list
+     * @see VertexArray#FaceIndeces
+     */
+    public final static int FaceIndeces(VertexArray.Type type, int countVertices, int face, int[] list){
+        switch(type){
+        case Triangles:{
+            final int n = (3 * face);
+            list[0] = (n);
+            list[1] = (n + 1);
+            list[2] = (n + 2);
+            return 3;
+        }
+        case TriangleStrip:{
+            final int n = face;
+            if (1 == (n&1)){
+                list[0] = (n);
+                list[1] = (n + 1);
+            }
+            else {
+                list[0] = (n + 1);
+                list[1] = (n);
+            }
+            list[2] = (n + 2);
+            return 3;
+        }
+        case TriangleFan:{
+            list[0] = 0;
+            list[1] = (face + 1);
+            list[2] = (face + 2);
+            return 3;
+        }
+        case Quads:{
+            final int n = (4 * face);
+            list[0] = (n);
+            list[1] = (n + 1);
+            list[2] = (n + 2);
+            list[3] = (n + 3);
+            return 4;
+        }
+        case QuadStrip:{
+            final int n = (2 * face);
+            list[0] = (n);
+            list[1] = (n + 1);
+            list[2] = (n + 3);
+            list[3] = (n + 2);
+            return 4;
+        }
+        case Polygon:{
+            for (int x = 0; x < countVertices; x++)
+                list[x] = x;
+            return countVertices;
+        }
+        default:
+            throw new IllegalStateException(type.name());
+        }
+    }
+    /**
+     * Unit normal of the triangle (a,b,c) with the rounding of {@link
+     * Vector#normal}.
+     * @return False for a degenerate triangle, leaving the
+     * destination unmodified
+     */
+    public final static boolean FaceNormal(float[] v, int a, int b, int c, float[] n, int no){
+
+        final int ao = (3 * a), bo = (3 * b), co = (3 * c);
+
+        final float ax = v[ao], ay = v[ao+1], az = v[ao+2];
+
+        final float qx = (v[bo] - ax), qy = (v[bo+1] - ay), qz = (v[bo+2] - az);
+        final float px = (v[co] - ax), py = (v[co+1] - ay), pz = (v[co+2] - az);
+
+        final float nx = Z(qy * pz - qz * py);
+        final float ny = Z(qz * px - qx * pz);
+        final float nz = Z(qx * py - qy * px);
+
+        final float length = (float)Math.sqrt((nx*nx)+(ny*ny)+(nz*nz));
+
+        if (ZERO == Z(length))
+            return false;
+        else {
+            final float m = (1.0f / length);
+            n[no]   = Z1(nx * m);
+            n[no+1] = Z1(ny * m);
+            n[no+2] = Z1(nz * m);
+            return true;
+        }
+    }
+    /**
+     * Flat normals for all faces.
+     */
+    public final static void Flat(VertexArray.Type type, float[] v, int countVertices, float[] n){
+
+        final int countFaces = VertexArray.CountFaces(type,countVertices);
+
+        if (VertexArray.Type.Polygon == type)
+
+            Flat(type,v,countVertices,0,n);
+        else {
+            for (int face = 0; face < countFaces; face++){
+
+                Flat(type,v,countVertices,face,n);
+            }
+        }
+    }
+    /**
+     * Flat normal for one face.
+     * @return False for a degenerate face
+     */
+    public final static boolean Flat(VertexArray.Type type, float[] v, int countVertices, int face, float[] n){
+        int a, b, c, d = -1;
+        switch(type){
+        case Triangles:
+            a = (3 * face);
+            b = (a + 1);
+            c = (a + 2);
+            break;
+        case TriangleStrip:
+            if (1 == (face&1)){
+                a = (face);
+                b = (face + 1);
+            }
+            else {
+                a = (face + 1);
+                b = (face);
+            }
+            c = (face + 2);
+            break;
+        case TriangleFan:
+            a = 0;
+            b = (face + 1);
+            c = (face + 2);
+            break;
+        case Quads:
+            a = (4 * face);
+            b = (a + 1);
+            c = (a + 2);
+            d = (a + 3);
+            break;
+        case QuadStrip:
+            a = (2 * face);
+            b = (a + 1);
+            c = (a + 3);
+            d = (a + 2);
+            break;
+        case Polygon:
+            if (3 > countVertices)
+                return false;
+            else {
+                final int no = (3 * (countVertices-1));
+                /*
+                 * Newell normal, independent of the convexity of the
+                 * first three vertices
+                 */
+                if (ZERO != Z(FastArea.Normal(v,0,3,countVertices,n,no))){
+                    n[no]   = Z1(n[no]);
+                    n[no+1] = Z1(n[no+1]);
+                    n[no+2] = Z1(n[no+2]);
+                    for (int vo = 0; vo < no; vo += 3){
+                        n[vo]   = n[no];
+                        n[vo+1] = n[no+1];
+                        n[vo+2] = n[no+2];
+                    }
+                    return true;
+                }
+                else
+                    return false;
+            }
+        default:
+            throw new IllegalStateException(type.name());
+        }
+
+        final int ao = (3 * a);
+
+        if (FaceNormal(v,a,b,c,n,ao)){
+
+            final float nx = n[ao], ny = n[ao+1], nz = n[ao+2];
+
+            final int bo = (3 * b), co = (3 * c);
+
+            n[bo]   = nx;
+            n[bo+1] = ny;
+            n[bo+2] = nz;
+
+            n[co]   = nx;
+            n[co+1] = ny;
+            n[co+2] = nz;
+
+            if (-1 < d){
+                final int dob = (3 * d);
+                n[dob]   = nx;
+                n[dob+1] = ny;
+                n[dob+2] = nz;
+            }
+            return true;
+        }
+        else
+            return false;
+    }
+    /**
+     * Smooth normals over vertices having identical positions.
+     *
+     * @param weight Face normal contribution to its vertices
+     * @param crease Angle in radians, at or above PI for no creases
+     */
+    public final static void Smooth(VertexArray.Type type, float[] v, int countVertices, float[] n,
+                                    Weight weight, float crease)
+    {
+        final int countFaces = VertexArray.CountFaces(type,countVertices);
+        if (1 > countFaces)
+            return;
+
+        final int corners = ((VertexArray.Type.Polygon == type)?(countVertices):(4));
+        final int[] list = new int[corners];
+        /*
+         * Unit face normals and weights, and the owning face of each
+         * vertex
+         */
+        final float[] faceN = new float[3 * countFaces];
+        final float[] faceA = new float[countFaces];
+        final boolean[] faceOk = new boolean[countFaces];
+        final int[] owner = new int[countVertices];
+        java.util.Arrays.fill(owner,-1);
+
+        for (int face = 0; face < countFaces; face++){
+
+            final int nc = FaceIndeces(type,countVertices,face,list);
+
+            final int fo = (3 * face);
+
+            if (FaceNormal(v,list[0],list[1],list[2],faceN,fo)){
+                faceOk[face] = true;
+
+                if (Weight.Area == weight)
+                    faceA[face] = Area(v,list,nc);
+
+                for (int k = 0; k < nc; k++)
+                    owner[list[k]] = face;
+            }
+        }
+        /*
+         * Position groups
+         */
+        final int[] group = new int[countVertices];
+        final int countGroups = Group(v,countVertices,group);
+        /*
+         * Group to (face, weight) incidence lists
+         */
+        final int[] start = new int[countGroups+1];
+        for (int face = 0; face < countFaces; face++){
+            if (faceOk[face]){
+                final int nc = FaceIndeces(type,countVertices,face,list);
+                for (int k = 0; k < nc; k++)
+                    start[group[list[k]]+1] += 1;
+            }
+        }
+        for (int g = 0; g < countGroups; g++)
+            start[g+1] += start[g];
+
+        final int countIncidence = start[countGroups];
+        final int[] fill = java.util.Arrays.copyOf(start,countGroups);
+        final int[] incFace = new int[countIncidence];
+        final float[] incWeight = new float[countIncidence];
+
+        for (int face = 0; face < countFaces; face++){
+            if (faceOk[face]){
+                final int nc = FaceIndeces(type,countVertices,face,list);
+                for (int k = 0; k < nc; k++){
+                    final int vk = list[k];
+                    final int at = fill[group[vk]]++;
+                    incFace[at] = face;
+                    if (Weight.Area == weight)
+                        incWeight[at] = faceA[face];
+                    else
+                        incWeight[at] = Angle(v,list[(k+nc-1)%nc],vk,list[(k+1)%nc]);
+                }
+            }
+        }
+        /*
+         * Accumulate
+         */
+        final boolean creased = (crease < PI);
+        final float cosCrease = (float)Math.cos(crease);
+
+        for (int vx = 0; vx < countVertices; vx++){
+
+            final int ref = owner[vx];
+            if (-1 < ref){
+                final int ro = (3 * ref);
+                final float rx = faceN[ro], ry = faceN[ro+1], rz = faceN[ro+2];
+
+                float sx = ZERO, sy = ZERO, sz = ZERO;
+
+                final int g = group[vx];
+                for (int at = start[g], end = start[g+1]; at < end; at++){
+
+                    final int fo = (3 * incFace[at]);
+                    final float fx = faceN[fo], fy = faceN[fo+1], fz = faceN[fo+2];
+
+                    if (creased && ((fx*rx)+(fy*ry)+(fz*rz)) < cosCrease)
+                        continue;
+                    else {
+                        final float w = incWeight[at];
+                        sx += (w * fx);
+                        sy += (w * fy);
+                        sz += (w * fz);
+                    }
+                }
+                final float length = (float)Math.sqrt((sx*sx)+(sy*sy)+(sz*sz));
+                final int vo = (3 * vx);
+                if (ZERO == Z(length)){
+                    n[vo]   = rx;
+                    n[vo+1] = ry;
+                    n[vo+2] = rz;
+                }
+                else {
+                    final float m = (1.0f / length);
+                    n[vo]   = Z1(sx * m);
+                    n[vo+1] = Z1(sy * m);
+                    n[vo+2] = Z1(sz * m);
+                }
+            }
+        }
+    }
+    /**
+     * Assign group identifiers to vertices having identical
+     * positions.
+     * @return Number of groups
+     */
+    public final static int Group(float[] v, int countVertices, int[] group){
+
+        int size = 16;
+        while (size < (countVertices<<1))
+            size <<= 1;
+        final int mask = (size-1);
+
+        final int[] table = new int[size];
+        java.util.Arrays.fill(table,-1);
+        final int[] chain = new int[countVertices];
+
+        int countGroups = 0;
+
+        for (int vx = 0; vx < countVertices; vx++){
+            final int vo = (3 * vx);
+            final float x = (v[vo] + ZERO), y = (v[vo+1] + ZERO), z = (v[vo+2] + ZERO);
+
+            int h = (Float.floatToIntBits(x) * 0x8da6b343) ^ (Float.floatToIntBits(y) * 0xd8163841) ^ (Float.floatToIntBits(z) * 0xcb1ab31f);
+            h = ((h ^ (h >>> 16)) & mask);
+
+            int found = -1;
+            for (int u = table[h]; -1 < u; u = chain[u]){
+                final int uo = (3 * u);
+                if (x == v[uo] && y == v[uo+1] && z == v[uo+2]){
+                    found = group[u];
+                    break;
+                }
+            }
+            if (-1 < found)
+                group[vx] = found;
+            else {
+                group[vx] = countGroups++;
+                chain[vx] = table[h];
+                table[h] = vx;
+            }
+        }
+        return countGroups;
+    }
+    /**
+     * @return Angle at vertex (b) in the triangle (a,b,c)
+     */
+    private final static float Angle(float[] v, int a, int b, int c){
+        final int ao = (3 * a), bo = (3 * b), co = (3 * c);
+
+        final float ux = (v[ao] - v[bo]), uy = (v[ao+1] - v[bo+1]), uz = (v[ao+2] - v[bo+2]);
+        final float wx = (v[co] - v[bo]), wy = (v[co+1] - v[bo+1]), wz = (v[co+2] - v[bo+2]);
+
+        final float lu = (float)Math.sqrt((ux*ux)+(uy*uy)+(uz*uz));
+        final float lw = (float)Math.sqrt((wx*wx)+(wy*wy)+(wz*wz));
+        if (ZERO == lu || ZERO == lw)
+            return ZERO;
+        else {
+            float cos = (((ux*wx)+(uy*wy)+(uz*wz)) / (lu * lw));
+            if (1.0f < cos)
+                cos = 1.0f;
+            else if (-1.0f > cos)
+                cos = -1.0f;
+            return (float)Math.acos(cos);
+        }
+    }
+    /**
+     * @return Area of the planar face by triangle fan
+     */
+    private final static float Area(float[] v, int[] list, int nc){
+        final int ao = (3 * list[0]);
+        final float ax = v[ao], ay = v[ao+1], az = v[ao+2];
+        float sx = ZERO, sy = ZERO, sz = ZERO;
+        for (int k = 1; (k+1) < nc; k++){
+            final int bo = (3 * list[k]), co = (3 * list[k+1]);
+            final float qx = (v[bo] - ax), qy = (v[bo+1] - ay), qz = (v[bo+2] - az);
+            final float px = (v[co] - ax), py = (v[co+1] - ay), pz = (v[co+2] - az);
+            sx += (qy * pz - qz * py);
+            sy += (qz * px - qx * pz);
+            sz += (qx * py - qy * px);
+        }
+        return (0.5f * (float)Math.sqrt((sx*sx)+(sy*sy)+(sz*sz)));
+    }
+
+
+    private VertexArrayNormals(){
+        super();
+    }
+}
@@ -22,6 +22,11 @@ package fv3.math;
  * This class selects all of the points in the designated plane for
  * the plane coordinate and epsilon.
  * 
+ * The points are found in the {@link VertexArraySlabs slab index} of
+ * the source vertex array, which is sorted once and reused for
+ * further profiles until the source is modified.
+ * 
+ * @see VertexArray#slabs()
  * @see QuickSort
  * @author John Pritchard
  */
@@ -38,16 +43,8 @@ public abstract class VertexArrayProfile
             super();
             if (va.hasFaces()){
 
-                final float[] src = va.vertices;
-                float[] tgt = null;
+                final float[] tgt = va.slabs().plane(Z,pz,pe);
 
-                for (int vertex = 0, count = src.length; vertex < count; ){
-                    float vx = src[vertex++];
-                    float vy = src[vertex++];
-                    float vz = src[vertex++];
-                    if (EEQ(pz,vz,pe))
-                        tgt = Add(tgt,new float[]{vx,vy,vz});
-                }
                 this.define(Sort(tgt,Z));
             }
             else
@@ -64,16 +61,8 @@ public abstract class VertexArrayProfile
             super();
             if (va.hasFaces()){
 
-                final float[] src = va.vertices;
-                float[] tgt = null;
+                final float[] tgt = va.slabs().plane(X,px,pe);
 
-                for (int vertex = 0, count = src.length; vertex < count; ){
-                    float vx = src[vertex++];
-                    float vy = src[vertex++];
-                    float vz = src[vertex++];
-                    if (EEQ(px,vx,pe))
-                        tgt = Add(tgt,new float[]{vx,vy,vz});
-                }
                 this.define(Sort(tgt,X));
             }
             else
@@ -90,16 +79,8 @@ public abstract class VertexArrayProfile
             super();
             if (va.hasFaces()){
 
-                final float[] src = va.vertices;
-                float[] tgt = null;
+                final float[] tgt = va.slabs().plane(Y,py,pe);
 
-                for (int vertex = 0, count = src.length; vertex < count; ){
-                    float vx = src[vertex++];
-                    float vy = src[vertex++];
-                    float vz = src[vertex++];
-                    if (EEQ(py,vy,pe))
-                        tgt = Add(tgt,new float[]{vx,vy,vz});
-                }
                 this.define(Sort(tgt,Y));
             }
             else
@@ -0,0 +1,473 @@
+/*
+ * fv3.math
+ * Copyright (C) 2012, John Pritchard, all rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fv3.math;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Compact encoding of a {@link VertexArray} for large static models:
+ * positions quantized to unsigned 16 bits within the bounds of the
+ * vertex array, and normals octahedron encoded into two signed
+ * bytes.
+ *
+ * <p> A vertex occupies eight bytes rather than twenty four.  The
+ * accessors decode on read.  The raw encoding is exported for
+ * shaders that dequantize, as <code>GL_UNSIGNED_SHORT</code>
+ * positions and <code>GL_BYTE</code> normals, each normalized.  A
+ * normalized position in <i>[0,1]</i> is decoded by the {@link
+ * #getMatrix() matrix} <i>(offset + (position x scale))</i>, and a
+ * normalized normal <i>(x,y)</i> in <i>[-1,1]</i> is decoded as
+ * <pre>
+ * z = 1 - |x| - |y|
+ * if (z &lt; 0) (x,y) = ((1 - |y|) sign(x), (1 - |x|) sign(y))
+ * normalize(x,y,z)
+ * </pre>
+ * </p>
+ *
+ * <p> The error of a position is about half of the extent of the
+ * bounds over 65535, and the error of a normal is under one degree.
+ * </p>
+ *
+ * @see VertexArray#quantize()
+ * @author jdp
+ */
+public final class VertexArrayQuantized
+    extends Abstract
+    implements fv3.Model.Element,
+               fv3.Bounds
+{
+    /**
+     * Number of bytes per vertex in the interleaved {@link #buffer()}
+     */
+    public final static int Stride = 8;
+    /**
+     * Offset of the position <i>(X,Y,Z)</i> in the interleaved
+     * buffer
+     */
+    public final static int OffsetPositions = 0;
+    /**
+     * Offset of the normal <i>(X,Y)</i> in the interleaved buffer
+     */
+    public final static int OffsetNormals = 6;
+
+    private final static float Q = 65535.0f;
+
+    private final static float S = 127.0f;
+
+
+    public final VertexArray.Type type;
+
+    public final int countVertices;
+
+    public final int countFaces;
+    /**
+     * Least position in each axis
+     */
+    public final float offsetX, offsetY, offsetZ;
+    /**
+     * Extent of the bounds in each axis
+     */
+    public final float scaleX, scaleY, scaleZ;
+    /**
+     * List of unsigned <i>(X,Y,Z)*</i>
+     */
+    private final short[] positions;
+    /**
+     * List of octahedral <i>(X,Y)*</i>, or null
+     */
+    private final byte[] normals;
+
+    private final fv3.Bounds bounds;
+
+
+    /**
+     * @param array Source, normals are encoded when in use
+     */
+    public VertexArrayQuantized(VertexArray array){
+        super();
+        if (null == array)
+            throw new IllegalArgumentException();
+        else {
+            final fv3.Bounds bounds = array.getBounds();
+            final int count = array.countVertices;
+            final float[] vertices = array.vertices;
+
+            this.type = array.type;
+            this.countVertices = count;
+            this.countFaces = VertexArray.CountFaces(this.type,count);
+            this.bounds = bounds;
+
+            this.offsetX = bounds.getBoundsMinX();
+            this.offsetY = bounds.getBoundsMinY();
+            this.offsetZ = bounds.getBoundsMinZ();
+            this.scaleX = (bounds.getBoundsMaxX() - this.offsetX);
+            this.scaleY = (bounds.getBoundsMaxY() - this.offsetY);
+            this.scaleZ = (bounds.getBoundsMaxZ() - this.offsetZ);
+
+            final float qX = (ZERO < this.scaleX)?(Q / this.scaleX):(ZERO);
+            final float qY = (ZERO < this.scaleY)?(Q / this.scaleY):(ZERO);
+            final float qZ = (ZERO < this.scaleZ)?(Q / this.scaleZ):(ZERO);
+
+            final short[] positions = new short[3 * count];
+            for (int cc = 0, end = (3 * count); cc < end; cc += 3){
+
+                positions[cc+X] = Quantize((vertices[cc+X] - this.offsetX) * qX);
+                positions[cc+Y] = Quantize((vertices[cc+Y] - this.offsetY) * qY);
+                positions[cc+Z] = Quantize((vertices[cc+Z] - this.offsetZ) * qZ);
+            }
+            this.positions = positions;
+
+            if (array.useNormals && null != array.normals){
+                final float[] src = array.normals;
+                final byte[] normals = new byte[2 * count];
+                for (int cc = 0; cc < count; cc++){
+
+                    Encode(src,(3 * cc),normals,(2 * cc));
+                }
+                this.normals = normals;
+            }
+            else
+                this.normals = null;
+        }
+    }
+
+
+    public VertexArray.Type getType(){
+        return this.type;
+    }
+    public int countVertices(){
+        return this.countVertices;
+    }
+    public int countFaces(){
+        return this.countFaces;
+    }
+    public boolean hasNormals(){
+        return (null != this.normals);
+    }
+    public float getVertex(int index, int component){
+        if (-1 < index && index < this.countVertices){
+            final int q = (this.positions[(3 * index) + component] & 0xffff);
+            switch(component){
+            case X:
+                return this.offsetX + ((q * this.scaleX) / Q);
+            case Y:
+                return this.offsetY + ((q * this.scaleY) / Q);
+            case Z:
+                return this.offsetZ + ((q * this.scaleZ) / Q);
+            default:
+                throw new IllegalArgumentException(String.valueOf(component));
+            }
+        }
+        else
+            throw new ArrayIndexOutOfBoundsException(String.valueOf(index));
+    }
+    public float[] getVertex(int index){
+        return this.copyVertex(index,(new float[3]),0);
+    }
+    public float[] copyVertex(int index, float[] re, int ofs){
+        if (-1 < index && index < this.countVertices){
+            this.decodeVertex(index,re,ofs);
+            return re;
+        }
+        else
+            throw new ArrayIndexOutOfBoundsException(String.valueOf(index));
+    }
+    /**
+     * @return Null when the vertex array was not using normals
+     */
+    public float[] getNormal(int index){
+        if (null == this.normals)
+            return null;
+        else
+            return this.copyNormal(index,(new float[3]),0);
+    }
+    public float[] copyNormal(int index, float[] re, int ofs){
+        if (null == this.normals)
+            return null;
+        else if (-1 < index && index < this.countVertices){
+            Decode(this.normals,(2 * index),re,ofs);
+            return re;
+        }
+        else
+            throw new ArrayIndexOutOfBoundsException(String.valueOf(index));
+    }
+    /**
+     * @return Decoded vertices
+     */
+    public float[] vertices(){
+        final int count = this.countVertices;
+        final float[] re = new float[3 * count];
+        for (int cc = 0; cc < count; cc++)
+            this.decodeVertex(cc,re,(3 * cc));
+        return re;
+    }
+    /**
+     * @return Decoded normals, or null when the vertex array was not
+     * using normals
+     */
+    public float[] normals(){
+        final byte[] normals = this.normals;
+        if (null == normals)
+            return null;
+        else {
+            final int count = this.countVertices;
+            final float[] re = new float[3 * count];
+            for (int cc = 0; cc < count; cc++)
+                Decode(normals,(2 * cc),re,(3 * cc));
+            return re;
+        }
+    }
+    /**
+     * @return A new vertex array having the decoded state of this
+     * encoding
+     */
+    public VertexArray toVertexArray(){
+        VertexArray re = new VertexArray(this.type,this.countVertices);
+        re.setVertices(0,this.vertices(),0,this.countVertices);
+        if (null != this.normals && null != re.normals){
+            re.useNormals = true;
+            System.arraycopy(this.normals(),0,re.normals,0,(3 * this.countVertices));
+        }
+        re.clearDirty();
+        return re;
+    }
+    /**
+     * @return Matrix from normalized positions to the bounds of the
+     * vertex array, for concatenation with the model matrix
+     */
+    public Matrix getMatrix(){
+        return new Matrix().translate(this.offsetX,this.offsetY,this.offsetZ).scale(this.scaleX,this.scaleY,this.scaleZ);
+    }
+    /**
+     * @return Encoded positions, <code>GL_UNSIGNED_SHORT</code>
+     * <i>(X,Y,Z)*</i>
+     */
+    public short[] positions(){
+        return this.positions.clone();
+    }
+    /**
+     * @return Encoded normals, <code>GL_BYTE</code> <i>(X,Y)*</i>, or
+     * null when the vertex array was not using normals
+     */
+    public byte[] octahedral(){
+        if (null == this.normals)
+            return null;
+        else
+            return this.normals.clone();
+    }
+    /**
+     * @return Native order direct buffer of the encoded positions,
+     * six bytes per vertex
+     */
+    public ByteBuffer positionBuffer(){
+        final ByteBuffer re = ByteBuffer.allocateDirect(6 * this.countVertices).order(ByteOrder.nativeOrder());
+        re.asShortBuffer().put(this.positions);
+        return re;
+    }
+    /**
+     * @return Direct buffer of the encoded normals, two bytes per
+     * vertex, or null when the vertex array was not using normals
+     */
+    public ByteBuffer normalBuffer(){
+        if (null == this.normals)
+            return null;
+        else {
+            final ByteBuffer re = ByteBuffer.allocateDirect(2 * this.countVertices).order(ByteOrder.nativeOrder());
+            re.put(this.normals);
+            re.rewind();
+            return re;
+        }
+    }
+    /**
+     * @return Native order direct buffer of the encoded positions and
+     * normals interleaved at {@link #Stride} bytes per vertex, with
+     * zero normals when the vertex array was not using normals
+     */
+    public ByteBuffer buffer(){
+        final short[] positions = this.positions;
+        final byte[] normals = this.normals;
+        final int count = this.countVertices;
+        final ByteBuffer re = ByteBuffer.allocateDirect(Stride * count).order(ByteOrder.nativeOrder());
+        for (int cc = 0; cc < count; cc++){
+            final int p = (3 * cc);
+            re.putShort(positions[p+X]);
+            re.putShort(positions[p+Y]);
+            re.putShort(positions[p+Z]);
+            if (null != normals){
+                re.put(normals[2 * cc]);
+                re.put(normals[(2 * cc) + 1]);
+            }
+            else {
+                re.put((byte)0);
+                re.put((byte)0);
+            }
+        }
+        re.rewind();
+        return re;
+    }
+    public fv3.Bounds getBounds(){
+        return this.bounds;
+    }
+    public float getBoundsMinX(){
+        return this.bounds.getBoundsMinX();
+    }
+    public float getBoundsMidX(){
+        return this.bounds.getBoundsMidX();
+    }
+    public float getBoundsMaxX(){
+        return this.bounds.getBoundsMaxX();
+    }
+    public float getBoundsMinY(){
+        return this.bounds.getBoundsMinY();
+    }
+    public float getBoundsMidY(){
+        return this.bounds.getBoundsMidY();
+    }
+    public float getBoundsMaxY(){
+        return this.bounds.getBoundsMaxY();
+    }
+    public float getBoundsMinZ(){
+        return this.bounds.getBoundsMinZ();
+    }
+    public float getBoundsMidZ(){
+        return this.bounds.getBoundsMidZ();
+    }
+    public float getBoundsMaxZ(){
+        return this.bounds.getBoundsMaxZ();
+    }
+    private void decodeVertex(int index, float[] re, int ofs){
+        final short[] positions = this.positions;
+        final int p = (3 * index);
+        re[ofs+X] = this.offsetX + (((positions[p+X] & 0xffff) * this.scaleX) / Q);
+        re[ofs+Y] = this.offsetY + (((positions[p+Y] & 0xffff) * this.scaleY) / Q);
+        re[ofs+Z] = this.offsetZ + (((positions[p+Z] & 0xffff) * this.scaleZ) / Q);
+    }
+
+
+    /**
+     * @param v Value in <i>[0,65535]</i>
+     */
+    private final static short Quantize(float v){
+        final int q = Math.round(v);
+        if (0 > q)
+            return 0;
+        else if (0xffff < q)
+            return (short)0xffff;
+        else
+            return (short)q;
+    }
+    /**
+     * Octahedral encoding, choosing the rounding of each component
+     * having the least error.
+     * @param src Unit normals <i>(X,Y,Z)*</i>
+     * @param so Offset into source
+     * @param dst Encoded normals <i>(X,Y)*</i>
+     * @param dso Offset into destination
+     */
+    public final static void Encode(float[] src, int so, byte[] dst, int dso){
+        final float nx = src[so+X], ny = src[so+Y], nz = src[so+Z];
+        final float l1 = Math.abs(nx) + Math.abs(ny) + Math.abs(nz);
+        if (ZERO == l1){
+            dst[dso] = 0;
+            dst[dso+1] = 0;
+        }
+        else {
+            float ox = (nx / l1), oy = (ny / l1);
+            if (ZERO > nz){
+                final float fx = (1.0f - Math.abs(oy)) * Sign(ox);
+                final float fy = (1.0f - Math.abs(ox)) * Sign(oy);
+                ox = fx;
+                oy = fy;
+            }
+            final float sx = (ox * S), sy = (oy * S);
+            final int x0 = Clamp((int)Math.floor(sx)), x1 = Clamp((int)Math.ceil(sx));
+            final int y0 = Clamp((int)Math.floor(sy)), y1 = Clamp((int)Math.ceil(sy));
+            int bx = x0, by = y0;
+            float best = Dot(x0,y0,nx,ny,nz);
+            float dot = Dot(x1,y0,nx,ny,nz);
+            if (dot > best){
+                best = dot;
+                bx = x1;
+                by = y0;
+            }
+            dot = Dot(x0,y1,nx,ny,nz);
+            if (dot > best){
+                best = dot;
+                bx = x0;
+                by = y1;
+            }
+            dot = Dot(x1,y1,nx,ny,nz);
+            if (dot > best){
+                bx = x1;
+                by = y1;
+            }
+            dst[dso] = (byte)bx;
+            dst[dso+1] = (byte)by;
+        }
+    }
+    /**
+     * @param src Encoded normals <i>(X,Y)*</i>
+     * @param so Offset into source
+     * @param dst Unit normals <i>(X,Y,Z)*</i>
+     * @param dso Offset into destination
+     */
+    public final static void Decode(byte[] src, int so, float[] dst, int dso){
+        float x = (Math.max(-127,src[so]) / S);
+        float y = (Math.max(-127,src[so+1]) / S);
+        final float z = 1.0f - Math.abs(x) - Math.abs(y);
+        if (ZERO > z){
+            final float fx = (1.0f - Math.abs(y)) * Sign(x);
+            final float fy = (1.0f - Math.abs(x)) * Sign(y);
+            x = fx;
+            y = fy;
+        }
+        final float l = (float)Math.sqrt((x * x) + (y * y) + (z * z));
+        if (ZERO < l){
+            dst[dso+X] = (x / l);
+            dst[dso+Y] = (y / l);
+            dst[dso+Z] = (z / l);
+        }
+        else {
+            dst[dso+X] = ZERO;
+            dst[dso+Y] = ZERO;
+            dst[dso+Z] = ZERO;
+        }
+    }
+    /**
+     * @return Cosine of the angle between the decoded normal and the
+     * unit normal
+     */
+    private final static float Dot(int ex, int ey, float nx, float ny, float nz){
+        float x = (ex / S);
+        float y = (ey / S);
+        final float z = 1.0f - Math.abs(x) - Math.abs(y);
+        if (ZERO > z){
+            final float fx = (1.0f - Math.abs(y)) * Sign(x);
+            final float fy = (1.0f - Math.abs(x)) * Sign(y);
+            x = fx;
+            y = fy;
+        }
+        final float l = (float)Math.sqrt((x * x) + (y * y) + (z * z));
+        return (((x * nx) + (y * ny) + (z * nz)) / l);
+    }
+    private final static int Clamp(int v){
+        return Math.max(-127,Math.min(127,v));
+    }
+}
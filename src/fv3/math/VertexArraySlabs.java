@@ -0,0 +1,205 @@
+/*
+ * fv3.math
+ * Copyright (C) 2012, John Pritchard, all rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fv3.math;
+
+/**
+ * Index of the vertices of a {@link VertexArray} sorted on each axis,
+ * for slab and plane queries in <i>O(log n + k)</i>.
+ *
+ * <p> The order of an axis is built on its first query, and retained
+ * by the vertex array until its vertices are modified, so that a
+ * series of sections through one vertex array sorts its vertices
+ * once.  The vertex array shares its vertices buffer with the
+ * index as with a {@link VertexArraySnapshot}, copying the buffer
+ * before its next modification. </p>
+ *
+ * @see VertexArray#slabs()
+ * @see VertexArrayProfile
+ * @author jdp
+ */
+public final class VertexArraySlabs
+    extends Abstract
+{
+
+    public final int countVertices;
+
+    private final float[] vertices;
+    /**
+     * Coordinates by axis in ascending order
+     */
+    private final float[][] keys = new float[3][];
+    /**
+     * Vertex indeces by axis in the order of the coordinates
+     */
+    private final int[][] order = new int[3][];
+
+
+    /**
+     * @param vertices Vertex list in <i>(X,Y,Z)*</i>, retained by
+     * reference
+     * @param count Number of vertices
+     */
+    public VertexArraySlabs(float[] vertices, int count){
+        super();
+        if (null == vertices || (3 * count) > vertices.length)
+            throw new IllegalArgumentException();
+        else {
+            this.vertices = vertices;
+            this.countVertices = count;
+        }
+    }
+
+
+    /**
+     * @param axis One of X, Y or Z
+     * @param min Least coordinate, inclusive
+     * @param max Greatest coordinate, inclusive
+     * @return Number of vertices in the slab
+     */
+    public int count(int axis, float min, float max){
+        final float[] keys = this.keys(axis);
+        return Math.max(0,(Upper(keys,max) - Lower(keys,min)));
+    }
+    /**
+     * @param axis One of X, Y or Z
+     * @param min Least coordinate, inclusive
+     * @param max Greatest coordinate, inclusive
+     * @return Indeces of the vertices in the slab in order of the
+     * axis coordinate
+     */
+    public int[] range(int axis, float min, float max){
+        final float[] keys = this.keys(axis);
+        final int from = Lower(keys,min);
+        final int to = Upper(keys,max);
+        if (from < to)
+            return java.util.Arrays.copyOfRange(this.order[axis],from,to);
+        else
+            return new int[0];
+    }
+    /**
+     * Select the vertices within epsilon of a plane perpendicular to
+     * an axis, as by {@link Abstract#EEQ(float,float,float)}.
+     * @param axis One of X, Y or Z
+     * @param p Plane coordinate
+     * @param e Epsilon
+     * @return List of <i>(X,Y,Z)*</i> in order of the axis
+     * coordinate, or null for none
+     */
+    public float[] plane(int axis, float p, float e){
+        final float[] keys = this.keys(axis);
+        final int[] order = this.order[axis];
+        /*
+         * The scaled epsilon of a selected vertex is bounded by that
+         * of the plane over (1 - e)
+         */
+        final float w = (e < 1.0f)?(E(p,e) / (1.0f - e)):(Float.POSITIVE_INFINITY);
+        final int from = Lower(keys,(p - w));
+        final int to = Upper(keys,(p + w));
+        if (from < to){
+            final float[] vertices = this.vertices;
+            float[] re = new float[3 * (to - from)];
+            int ro = 0;
+            for (int cc = from; cc < to; cc++){
+                if (EEQ(p,keys[cc],e)){
+                    final int vo = (3 * order[cc]);
+                    re[ro++] = vertices[vo+X];
+                    re[ro++] = vertices[vo+Y];
+                    re[ro++] = vertices[vo+Z];
+                }
+            }
+            if (0 == ro)
+                return null;
+            else if (ro < re.length)
+                return java.util.Arrays.copyOf(re,ro);
+            else
+                return re;
+        }
+        else
+            return null;
+    }
+    /**
+     * @return Ascending coordinates of the axis
+     */
+    private synchronized float[] keys(int axis){
+        switch (axis){
+        case X:
+        case Y:
+        case Z:
+            break;
+        default:
+            throw new IllegalArgumentException(String.valueOf(axis));
+        }
+        float[] keys = this.keys[axis];
+        if (null == keys){
+            final float[] vertices = this.vertices;
+            final int count = this.countVertices;
+            /*
+             * Sort (coordinate,index) as long
+             */
+            final long[] sort = new long[count];
+            for (int cc = 0; cc < count; cc++){
+                int bits = Float.floatToIntBits(vertices[(3 * cc) + axis]);
+                bits ^= ((bits >> 31) & 0x7fffffff);
+                sort[cc] = (((long)bits << 32) | cc);
+            }
+            java.util.Arrays.sort(sort);
+
+            final int[] order = new int[count];
+            keys = new float[count];
+            for (int cc = 0; cc < count; cc++){
+                final int index = (int)sort[cc];
+                order[cc] = index;
+                keys[cc] = vertices[(3 * index) + axis];
+            }
+            this.order[axis] = order;
+            this.keys[axis] = keys;
+        }
+        return keys;
+    }
+
+
+    /**
+     * @return Index of the first key not less than the value
+     */
+    private final static int Lower(float[] keys, float value){
+        int lo = 0, hi = keys.length;
+        while (lo < hi){
+            final int mid = ((lo + hi) >>> 1);
+            if (keys[mid] < value)
+                lo = (mid + 1);
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+    /**
+     * @return Index of the first key greater than the value
+     */
+    private final static int Upper(float[] keys, float value){
+        int lo = 0, hi = keys.length;
+        while (lo < hi){
+            final int mid = ((lo + hi) >>> 1);
+            if (keys[mid] <= value)
+                lo = (mid + 1);
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+}
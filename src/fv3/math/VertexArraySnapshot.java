@@ -0,0 +1,211 @@
+/*
+ * fv3.math
+ * Copyright (C) 2012, John Pritchard, all rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fv3.math;
+
+/**
+ * Immutable state of a {@link VertexArray}, as from {@link
+ * VertexArray#freeze()}.
+ *
+ * <p> All fields are final, and the buffers are never modified, so
+ * that any number of threads may read a snapshot without locking
+ * while its vertex array continues to be modified.  The snapshot
+ * shares the buffers of its vertex array, which copies them before
+ * its next modification. </p>
+ *
+ * <p> The buffers may exceed the number of vertices, see {@link
+ * VertexArray#capacity()}. </p>
+ *
+ * @see VertexArray#freeze()
+ * @author jdp
+ */
+public final class VertexArraySnapshot
+    extends java.lang.Object
+    implements fv3.Model.Element,
+               fv3.Bounds
+{
+
+    public final VertexArray.Type type;
+
+    public final int countVertices;
+
+    public final int countFaces;
+
+    private final float[] vertices;
+    /**
+     * Null when the vertex array was not using normals
+     */
+    private final float[] normals;
+
+    private final fv3.Bounds bounds;
+
+
+    VertexArraySnapshot(VertexArray.Type type, int countVertices, float[] vertices, float[] normals,
+                        fv3.Bounds bounds)
+    {
+        super();
+        this.type = type;
+        this.countVertices = countVertices;
+        this.countFaces = VertexArray.CountFaces(type,countVertices);
+        this.vertices = vertices;
+        this.normals = normals;
+        this.bounds = bounds;
+    }
+
+
+    public VertexArray.Type getType(){
+        return this.type;
+    }
+    public int countVertices(){
+        return this.countVertices;
+    }
+    public int countFaces(){
+        return this.countFaces;
+    }
+    public boolean hasNormals(){
+        return (null != this.normals);
+    }
+    public float getVertex(int index, int component){
+        if (-1 < index && index < this.countVertices)
+            return this.vertices[(3 * index) + component];
+        else
+            throw new ArrayIndexOutOfBoundsException(String.valueOf(index));
+    }
+    public float[] getVertex(int index){
+        return this.copyVertex(index,(new float[3]),0);
+    }
+    public float[] copyVertex(int index, float[] re, int ofs){
+        if (-1 < index && index < this.countVertices){
+            System.arraycopy(this.vertices,(3 * index),re,ofs,3);
+            return re;
+        }
+        else
+            throw new ArrayIndexOutOfBoundsException(String.valueOf(index));
+    }
+    /**
+     * @return Null when the vertex array was not using normals
+     */
+    public float[] getNormal(int index){
+        if (null == this.normals)
+            return null;
+        else
+            return this.copyNormal(index,(new float[3]),0);
+    }
+    public float[] copyNormal(int index, float[] re, int ofs){
+        if (null == this.normals)
+            return null;
+        else if (-1 < index && index < this.countVertices){
+            System.arraycopy(this.normals,(3 * index),re,ofs,3);
+            return re;
+        }
+        else
+            throw new ArrayIndexOutOfBoundsException(String.valueOf(index));
+    }
+    /**
+     * @return Copy of the vertices
+     */
+    public float[] vertices(){
+        return java.util.Arrays.copyOf(this.vertices,(3 * this.countVertices));
+    }
+    /**
+     * Copy a range of vertices.
+     * @param index First vertex
+     * @param count Number of vertices
+     * @param dst Destination buffer of <i>(X,Y,Z)*</i>
+     * @param ofs Offset into destination
+     * @return Destination
+     */
+    public float[] copyVertices(int index, int count, float[] dst, int ofs){
+        if (-1 < index && -1 < count && (index + count) <= this.countVertices){
+            System.arraycopy(this.vertices,(3 * index),dst,ofs,(3 * count));
+            return dst;
+        }
+        else
+            throw new ArrayIndexOutOfBoundsException(String.format("%d+%d/%d",index,count,this.countVertices));
+    }
+    /**
+     * @return Copy of the normals, or null when the vertex array was
+     * not using normals
+     */
+    public float[] normals(){
+        if (null == this.normals)
+            return null;
+        else
+            return java.util.Arrays.copyOf(this.normals,(3 * this.countVertices));
+    }
+    /**
+     * Copy a range of normals.
+     * @return Destination, or null when the vertex array was not
+     * using normals
+     * @see #copyVertices(int,int,float[],int)
+     */
+    public float[] copyNormals(int index, int count, float[] dst, int ofs){
+        if (null == this.normals)
+            return null;
+        else if (-1 < index && -1 < count && (index + count) <= this.countVertices){
+            System.arraycopy(this.normals,(3 * index),dst,ofs,(3 * count));
+            return dst;
+        }
+        else
+            throw new ArrayIndexOutOfBoundsException(String.format("%d+%d/%d",index,count,this.countVertices));
+    }
+    /**
+     * @return A new mutable vertex array having the state of this
+     * snapshot
+     */
+    public VertexArray thaw(){
+        VertexArray re = new VertexArray(this.type,this.countVertices);
+        re.setVertices(0,this.vertices,0,this.countVertices);
+        if (null != this.normals && null != re.normals){
+            re.useNormals = true;
+            System.arraycopy(this.normals,0,re.normals,0,(3 * this.countVertices));
+        }
+        re.clearDirty();
+        return re;
+    }
+    public fv3.Bounds getBounds(){
+        return this.bounds;
+    }
+    public float getBoundsMinX(){
+        return this.bounds.getBoundsMinX();
+    }
+    public float getBoundsMidX(){
+        return this.bounds.getBoundsMidX();
+    }
+    public float getBoundsMaxX(){
+        return this.bounds.getBoundsMaxX();
+    }
+    public float getBoundsMinY(){
+        return this.bounds.getBoundsMinY();
+    }
+    public float getBoundsMidY(){
+        return this.bounds.getBoundsMidY();
+    }
+    public float getBoundsMaxY(){
+        return this.bounds.getBoundsMaxY();
+    }
+    public float getBoundsMinZ(){
+        return this.bounds.getBoundsMinZ();
+    }
+    public float getBoundsMidZ(){
+        return this.bounds.getBoundsMidZ();
+    }
+    public float getBoundsMaxZ(){
+        return this.bounds.getBoundsMaxZ();
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * fv3.math
+ * Copyright (C) 2012, John Pritchard, all rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fv3.math;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Staging and sub range upload helper for a {@link VertexArray}: an
+ * off heap copy of its vertices and normals in a native order direct
+ * buffer, for {@link fv3.GLES2#GL_ARRAY_BUFFER GL_ARRAY_BUFFER}
+ * upload.  The heap arrays of the vertex array remain canonical, and
+ * this class does not remove the copy from them.  Each definition or
+ * update copies a range with bulk puts, so that a dynamic mesh copies
+ * only its modified ranges (see {@link
+ * #update(VertexArray,VertexArrayDirty)}) from frame to frame.
+ *
+ * <h3>Layout</h3>
+ *
+ * <p> The {@link Layout#Vertices Vertices} and {@link Layout#Normals
+ * Normals} layouts are tightly packed <i>(X,Y,Z)*</i> lists.  The
+ * {@link Layout#Interleaved Interleaved} layout is the list of
+ * <i>(X,Y,Z,NX,NY,NZ)*</i> for a single attribute buffer, see {@link
+ * #stride}, {@link #offsetVertices} and {@link #offsetNormals}. </p>
+ *
+ * <h3>Reuse</h3>
+ *
+ * <p> The direct buffer is reallocated only when a redefinition
+ * exceeds its capacity, so that a dynamic mesh is rewritten into the
+ * same native memory from frame to frame.  A static mesh may be
+ * defined once and its vertex array released from the heap. </p>
+ *
+ * @see VertexArray#staging
+ * @author jdp
+ */
+public class VertexArrayStaging
+    extends java.lang.Object
+    implements fv3.math.Notation,
+               fv3.GLES2
+{
+    public enum Layout {
+        Vertices(3), Normals(3), Interleaved(6);
+
+        /**
+         * Number of floats per vertex
+         */
+        public final int components;
+
+        /**
+         * Number of bytes per vertex
+         */
+        public final int stride;
+
+        private Layout(int components){
+            this.components = components;
+            this.stride = (components * SizeofFloat);
+        }
+    }
+    public final static int SizeofFloat = 4;
+
+
+    public final Layout layout;
+
+    private VertexArray.Type type;
+
+    private int countVertices;
+
+    private FloatBuffer buffer;
+
+    private float[] scratch;
+
+
+    public VertexArrayStaging(Layout layout){
+        super();
+        if (null != layout)
+            this.layout = layout;
+        else
+            throw new IllegalArgumentException();
+    }
+    public VertexArrayStaging(Layout layout, VertexArray array){
+        this(layout);
+        this.define(array);
+    }
+
+
+    /**
+     * Copy the vertex array into this buffer, reallocating only when
+     * the vertex array exceeds the capacity of this buffer.
+     */
+    public final VertexArrayStaging define(VertexArray array){
+        if (null != array){
+            final int count = array.countVertices;
+
+            this.type = array.type;
+            this.countVertices = count;
+
+            this.ensureCapacity(count);
+
+            return this.update(array,0,count);
+        }
+        else
+            throw new IllegalArgumentException();
+    }
+    /**
+     * Copy a range of vertices from the vertex array into this
+     * buffer, as for a partial redefinition of a dynamic mesh.
+     *
+     * @param array Source having the vertex count of this buffer
+     * @param index First vertex
+     * @param count Number of vertices
+     */
+    public final VertexArrayStaging update(VertexArray array, int index, int count){
+        if (null == array)
+            throw new IllegalArgumentException();
+        else if (0 > index || 0 > count || (index + count) > this.countVertices)
+            throw new IllegalArgumentException(String.format("%d+%d/%d",index,count,this.countVertices));
+        else if (0 < count){
+            final FloatBuffer buffer = this.buffer;
+            final float[] vertices = array.vertices;
+            final float[] normals = (array.useNormals)?(array.normals):(null);
+
+            final int start = (3 * index);
+            final int end = (3 * (index + count));
+
+            switch(this.layout){
+            case Vertices:
+                buffer.position(start);
+                buffer.put(vertices,start,(end - start));
+                break;
+
+            case Normals:
+                buffer.position(start);
+                if (null != normals)
+                    buffer.put(normals,start,(end - start));
+                else {
+                    final float[] zero = this.scratch(end - start);
+                    java.util.Arrays.fill(zero,0,(end - start),ZERO);
+                    buffer.put(zero,0,(end - start));
+                }
+                break;
+
+            case Interleaved:{
+                final int length = (2 * (end - start));
+                final float[] interleave = this.scratch(length);
+                for (int cc = start, ofs = 0; cc < end; cc += 3, ofs += 6){
+
+                    interleave[ofs]   = vertices[cc+X];
+                    interleave[ofs+1] = vertices[cc+Y];
+                    interleave[ofs+2] = vertices[cc+Z];
+
+                    if (null != normals){
+                        interleave[ofs+3] = normals[cc+X];
+                        interleave[ofs+4] = normals[cc+Y];
+                        interleave[ofs+5] = normals[cc+Z];
+                    }
+                    else {
+                        interleave[ofs+3] = ZERO;
+                        interleave[ofs+4] = ZERO;
+                        interleave[ofs+5] = ZERO;
+                    }
+                }
+                buffer.position(2 * start);
+                buffer.put(interleave,0,length);
+                break;
+            }
+            default:
+                throw new IllegalStateException(this.layout.name());
+            }
+            buffer.rewind();
+        }
+        return this;
+    }
+    /**
+     * Copy the modified ranges of the vertex array into this buffer.
+     * The caller clears the ranges after issuing the corresponding
+     * sub range updates, for example <code>glBufferSubData</code> at
+     * <code>(from * stride)</code> for <code>((to - from) *
+     * stride)</code> bytes.
+     *
+     * @param array Source having the vertex count of this buffer
+     * @param dirty Ranges of vertices, as from {@link
+     * VertexArray#dirtyVertices()} or {@link
+     * VertexArray#dirtyNormals()}
+     */
+    public final VertexArrayStaging update(VertexArray array, VertexArrayDirty dirty){
+        if (null == dirty)
+            throw new IllegalArgumentException();
+        else {
+            for (int range = 0, ranges = dirty.size(); range < ranges; range++){
+
+                final int from = dirty.from(range);
+                final int to = Math.min(this.countVertices,dirty.to(range));
+                if (from < to)
+                    this.update(array,from,(to - from));
+            }
+            return this;
+        }
+    }
+    /**
+     * @return Heap buffer for staging a bulk put of the given number
+     * of floats
+     */
+    private float[] scratch(int length){
+        float[] scratch = this.scratch;
+        if (null == scratch || length > scratch.length){
+            scratch = new float[length];
+            this.scratch = scratch;
+        }
+        return scratch;
+    }
+    /**
+     * Reserve room for a number of vertices, preserving the contents
+     * of the buffer.  The limit remains the defined vertices.
+     */
+    public final VertexArrayStaging ensureCapacity(int count){
+        FloatBuffer buffer = this.buffer;
+        if (null == buffer || count > this.capacity()){
+
+            final FloatBuffer grow = ByteBuffer.allocateDirect(count * this.layout.stride).order(ByteOrder.nativeOrder()).asFloatBuffer();
+            if (null != buffer){
+                buffer.limit(buffer.capacity()).rewind();
+                grow.put(buffer);
+            }
+            buffer = grow;
+            this.buffer = buffer;
+        }
+        buffer.limit(this.countVertices * this.layout.components).rewind();
+        return this;
+    }
+    /**
+     * @return Number of vertices available without reallocating the
+     * direct buffer
+     */
+    public final int capacity(){
+        FloatBuffer buffer = this.buffer;
+        if (null == buffer)
+            return 0;
+        else
+            return (buffer.capacity() / this.layout.components);
+    }
+    public final VertexArray.Type getType(){
+        return this.type;
+    }
+    public final int countVertices(){
+        return this.countVertices;
+    }
+    /**
+     * @return Native order direct buffer positioned at zero and
+     * limited to the defined vertices.  Null before definition.
+     */
+    public final FloatBuffer buffer(){
+        return this.buffer;
+    }
+    /**
+     * @return Number of bytes in the defined vertices, as for
+     * <code>glBufferData</code>
+     */
+    public final int sizeof(){
+        return (this.countVertices * this.layout.stride);
+    }
+    /**
+     * @return Number of bytes from one vertex to the next, as for
+     * <code>glVertexAttribPointer</code>
+     */
+    public final int stride(){
+        return this.layout.stride;
+    }
+    /**
+     * @return Byte offset of the first position, or negative one when
+     * this layout has no positions
+     */
+    public final int offsetVertices(){
+        switch(this.layout){
+        case Vertices:
+        case Interleaved:
+            return 0;
+        default:
+            return -1;
+        }
+    }
+    /**
+     * @return Byte offset of the first normal, or negative one when
+     * this layout has no normals
+     */
+    public final int offsetNormals(){
+        switch(this.layout){
+        case Normals:
+            return 0;
+        case Interleaved:
+            return (3 * SizeofFloat);
+        default:
+            return -1;
+        }
+    }
+    /**
+     * @return Primitive for <code>glDrawArrays</code>, or negative one
+     * for types not defined in GLES2
+     */
+    public final int mode(){
+        VertexArray.Type type = this.type;
+        if (null == type)
+            return -1;
+        else {
+            switch(type){
+            case Points:
+                return GL_POINTS;
+            case Lines:
+                return GL_LINES;
+            case LineStrip:
+                return GL_LINE_STRIP;
+            case LineLoop:
+                return GL_LINE_LOOP;
+            case Triangles:
+                return GL_TRIANGLES;
+            case TriangleStrip:
+                return GL_TRIANGLE_STRIP;
+            case TriangleFan:
+                return GL_TRIANGLE_FAN;
+            default:
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * fv3.math
+ * Copyright (C) 2012, John Pritchard, all rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fv3.math;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Bulk transform kernels over <i>(X,Y,Z)*</i> buffers.
+ *
+ * <h3>Normals</h3>
+ *
+ * <p> Normals are transformed with the cofactor matrix of the upper
+ * three by three of the transform, which is the inverse transpose
+ * scaled by the determinant, and renormalized.  The sign of the
+ * determinant keeps normals consistent with face winding under
+ * reflection, as when recomputing normals from transformed
+ * vertices. </p>
+ *
+ * <h3>Parallel</h3>
+ *
+ * <p> Vertex ranges of at least {@link #Parallel} vertices are
+ * partitioned across the available processors, forking a task per
+ * partition on a shared pool of daemon threads and joining their
+ * completion. </p>
+ *
+ * @see VertexArray#transform
+ * @author jdp
+ */
+public final class VertexArrayTransform
+    extends Abstract
+{
+    /**
+     * Minimum number of vertices for partitioning a transform across
+     * processors
+     */
+    public final static int Parallel = (1 << 16);
+
+    final static int Processors = Runtime.getRuntime().availableProcessors();
+
+
+    /**
+     * Transform the vertices, and the normals when in use, of a
+     * vertex array in place.  The caller is responsible for
+     * unsharing and dirtying the vertex array, as in {@link
+     * VertexArray#transform}.
+     */
+    final static void Apply(Matrix m, VertexArray va){
+
+        final float[] normals = (va.useNormals)?(va.normals):(null);
+
+        Apply(m.array(),va.vertices,normals,va.countVertices);
+    }
+    /**
+     * @param m Matrix array as from {@link Matrix#array()}
+     * @param vertices Buffer of <i>(X,Y,Z)*</i>
+     * @param normals Optional buffer of normals for the vertices
+     * @param count Number of vertices
+     */
+    public final static void Apply(final float[] m, final float[] vertices, final float[] normals, final int count){
+
+        final float[] n = ((null != normals)?(Normal(m)):(null));
+
+        if (count < Parallel || 1 == Processors){
+
+            Vertices(m,vertices,0,count);
+
+            if (null != n)
+                Normals(n,normals,0,count);
+        }
+        else {
+            final int parts = Math.min(Processors,(count / (Parallel >> 2)));
+            final int size = ((count + parts - 1) / parts);
+
+            Callable<?>[] tasks = new Callable<?>[parts];
+            for (int part = 0; part < parts; part++){
+
+                final int from = (part * size);
+                final int to = Math.min(count,(from + size));
+
+                tasks[part] = new Callable<Object>(){
+                        public Object call(){
+                            Vertices(m,vertices,from,to);
+                            if (null != n)
+                                Normals(n,normals,from,to);
+                            return null;
+                        }
+                    };
+            }
+            Fork(tasks);
+        }
+    }
+    /**
+     * Translate vertices.
+     */
+    public final static void Translate(final float[] vertices, final int count,
+                                       final float dx, final float dy, final float dz)
+    {
+        if (count < Parallel || 1 == Processors)
+
+            Translate(vertices,0,count,dx,dy,dz);
+        else {
+            final int parts = Math.min(Processors,(count / (Parallel >> 2)));
+            final int size = ((count + parts - 1) / parts);
+
+            Callable<?>[] tasks = new Callable<?>[parts];
+            for (int part = 0; part < parts; part++){
+
+                final int from = (part * size);
+                final int to = Math.min(count,(from + size));
+
+                tasks[part] = new Callable<Object>(){
+                        public Object call(){
+                            Translate(vertices,from,to,dx,dy,dz);
+                            return null;
+                        }
+                    };
+            }
+            Fork(tasks);
+        }
+    }
+    /**
+     * Transform the vertices in the index range.
+     * @param m Matrix array
+     * @param v Buffer of <i>(X,Y,Z)*</i>
+     * @param from First vertex index, inclusive
+     * @param to Last vertex index, exclusive
+     */
+    public final static void Vertices(float[] m, float[] v, int from, int to){
+
+        final float m00 = m[M00], m01 = m[M01], m02 = m[M02], m03 = m[M03];
+        final float m10 = m[M10], m11 = m[M11], m12 = m[M12], m13 = m[M13];
+        final float m20 = m[M20], m21 = m[M21], m22 = m[M22], m23 = m[M23];
+
+        for (int ofs = (3 * from), end = (3 * to); ofs < end; ofs += 3){
+
+            final float vX = v[ofs];
+            final float vY = v[ofs+1];
+            final float vZ = v[ofs+2];
+
+            v[ofs]   = m00 * vX + m01 * vY + m02 * vZ + m03;
+            v[ofs+1] = m10 * vX + m11 * vY + m12 * vZ + m13;
+            v[ofs+2] = m20 * vX + m21 * vY + m22 * vZ + m23;
+        }
+    }
+    /**
+     * Transform and renormalize the normals in the index range.
+     * @param n Three by three normal matrix in row major order
+     * @param v Buffer of normals
+     * @param from First vertex index, inclusive
+     * @param to Last vertex index, exclusive
+     */
+    public final static void Normals(float[] n, float[] v, int from, int to){
+
+        final float n00 = n[0], n01 = n[1], n02 = n[2];
+        final float n10 = n[3], n11 = n[4], n12 = n[5];
+        final float n20 = n[6], n21 = n[7], n22 = n[8];
+
+        for (int ofs = (3 * from), end = (3 * to); ofs < end; ofs += 3){
+
+            final float vX = v[ofs];
+            final float vY = v[ofs+1];
+            final float vZ = v[ofs+2];
+
+            final float x = n00 * vX + n01 * vY + n02 * vZ;
+            final float y = n10 * vX + n11 * vY + n12 * vZ;
+            final float z = n20 * vX + n21 * vY + n22 * vZ;
+
+            final float length = (float)Math.sqrt((x*x)+(y*y)+(z*z));
+            if (ZERO < length){
+                final float s = (1.0f / length);
+                v[ofs]   = (x * s);
+                v[ofs+1] = (y * s);
+                v[ofs+2] = (z * s);
+            }
+        }
+    }
+    public final static void Translate(float[] v, int from, int to, float dx, float dy, float dz){
+
+        for (int ofs = (3 * from), end = (3 * to); ofs < end; ofs += 3){
+
+            v[ofs]   += dx;
+            v[ofs+1] += dy;
+            v[ofs+2] += dz;
+        }
+    }
+    /**
+     * @param m Matrix array
+     * @return Row major three by three cofactor matrix of the upper
+     * three by three of the argument, or null when that is the
+     * identity
+     * @see Matrix#Cofactor
+     */
+    public final static float[] Normal(float[] m){
+
+        if (1.0f == m[M00] && ZERO == m[M01] && ZERO == m[M02] &&
+            ZERO == m[M10] && 1.0f == m[M11] && ZERO == m[M12] &&
+            ZERO == m[M20] && ZERO == m[M21] && 1.0f == m[M22])
+        {
+            return null;
+        }
+        else {
+            final float[] n = new float[9];
+            Matrix.Cofactor(m,n);
+            return n;
+        }
+    }
+    /**
+     * Run the tasks on the pool and join their completion.  Every
+     * task is joined before this method returns or throws, so that
+     * none continues to write into the caller's buffers.
+     */
+    final static void Fork(Callable<?>[] tasks){
+        ExecutorService pool = Pool();
+        Future<?>[] futures = new Future<?>[tasks.length];
+        for (int cc = 1; cc < tasks.length; cc++){
+            futures[cc] = pool.submit(tasks[cc]);
+        }
+        RuntimeException failure = null;
+        try {
+            /*
+             * The calling thread performs the first partition
+             */
+            tasks[0].call();
+        }
+        catch (RuntimeException exc){
+            failure = exc;
+        }
+        catch (Exception exc){
+            failure = new IllegalStateException(exc);
+        }
+        boolean interrupted = false;
+        for (int cc = 1; cc < futures.length; cc++){
+            while (true){
+                try {
+                    futures[cc].get();
+                    break;
+                }
+                catch (InterruptedException exc){
+                    interrupted = true;
+                }
+                catch (ExecutionException exc){
+                    if (null == failure)
+                        failure = new IllegalStateException(exc.getCause());
+                    break;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        if (null != failure)
+            throw failure;
+    }
+
+    private static ExecutorService Pool;
+
+    private final static synchronized ExecutorService Pool(){
+        if (null == Pool){
+            Pool = Executors.newFixedThreadPool(Math.max(1,(Processors-1)),new ThreadFactory(){
+                    public Thread newThread(Runnable r){
+                        Thread t = new Thread(r,"fv3.math.VertexArrayTransform");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        }
+        return Pool;
+    }
+
+
+    private VertexArrayTransform(){
+        super();
+    }
+
+
+    /**
+     * Benchmark the bulk transform against the vertex by vertex
+     * transform.
+     */
+    public static void main(String[] argv){
+        final int count = ((0 < argv.length)?(Integer.parseInt(argv[0])):(1000000));
+        final int rounds = 20;
+
+        VertexArray va = new VertexArray(VertexArray.Type.Triangles,(3 * (count/3)));
+        float[] v = va.vertices;
+        java.util.Random random = new java.util.Random(0);
+        for (int cc = 0; cc < v.length; cc++)
+            v[cc] = random.nextFloat();
+
+        Matrix m = new Matrix().rotate(0.1f,0.2f,0.3f).translate(0.001f,0.002f,0.003f);
+        float[] mm = m.array();
+
+        for (int warm = 0; warm < 3; warm++){
+            for (int index = 0, end = v.length; index < end; index += 3)
+                m.transform(v,index);
+            Apply(mm,v,null,va.countVertices);
+        }
+
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++){
+            for (int index = 0, end = v.length; index < end; index += 3)
+                m.transform(v,index);
+        }
+        final double serial = ((System.nanoTime() - start) / (1e6 * rounds));
+
+        start = System.nanoTime();
+        for (int round = 0; round < rounds; round++){
+            Apply(mm,v,null,va.countVertices);
+        }
+        final double bulk = ((System.nanoTime() - start) / (1e6 * rounds));
+
+        System.out.printf("%d vertices, %d processors: vertex transform %.3f ms, bulk transform %.3f ms, speedup %.2f%n",
+                          va.countVertices,Processors,serial,bulk,(serial/bulk));
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * fv3.math
+ * Copyright (C) 2012, John Pritchard, all rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fv3.math;
+
+/**
+ * Post transform vertex cache and vertex fetch optimization of an
+ * indexed triangle list, in place.
+ *
+ * <p> The {@link #Triangles} pass reorders triangles by the greedy
+ * scoring of Tom Forsyth's "Linear-Speed Vertex Cache Optimisation"
+ * over an LRU cache model of {@link #CacheSize} entries.  The {@link
+ * #Fetch} pass then renumbers the vertex pool in order of first use,
+ * so that vertex fetch proceeds through the pool sequentially. </p>
+ *
+ * <p> The average cache miss ratio (ACMR), the number of vertices
+ * transformed per triangle, is measured by {@link #ACMR} over a FIFO
+ * cache of {@link #FifoSize} entries.  It ranges from 0.5 for an
+ * ideal mesh to 3.0 for triangles sharing no vertices. </p>
+ *
+ * <p> The optimization is performed once, offline or at load time,
+ * as in
+ * <pre>
+ * new IndexedVertexArray(solid,e).optimize()
+ * </pre>
+ * and the triangle set and its windings are preserved. </p>
+ *
+ * @see IndexedVertexArray#optimize()
+ * @author jdp
+ */
+public class VertexCache
+    extends Abstract
+{
+    /**
+     * Size of the LRU cache modelled in scoring
+     */
+    public final static int CacheSize = 32;
+    /**
+     * Size of the FIFO cache modelled in measurement
+     */
+    public final static int FifoSize = 16;
+
+    private final static float CacheDecayPower = 1.5f;
+    private final static float LastTriangleScore = 0.75f;
+    private final static float ValenceBoostScale = 2.0f;
+    private final static float ValenceBoostPower = 0.5f;
+    private final static int ValenceLimit = 32;
+
+    private final static float[] CacheScore = new float[CacheSize];
+    private final static float[] ValenceScore = new float[ValenceLimit];
+    static {
+        final float scale = (1.0f / (CacheSize - 3));
+        for (int cc = 0; cc < CacheSize; cc++){
+            if (3 > cc)
+                CacheScore[cc] = LastTriangleScore;
+            else
+                CacheScore[cc] = (float)Math.pow((1.0f - ((cc - 3) * scale)),CacheDecayPower);
+        }
+        for (int cc = 1; cc < ValenceLimit; cc++){
+            ValenceScore[cc] = (float)(ValenceBoostScale * Math.pow(cc,-ValenceBoostPower));
+        }
+    }
+
+
+    public final int countTriangles;
+    /**
+     * Average cache miss ratio before optimization
+     */
+    public final float acmrBefore;
+    /**
+     * Average cache miss ratio after optimization
+     */
+    public final float acmrAfter;
+
+
+    /**
+     * Optimize in place.
+     * @param array Indexed triangle list
+     * @see IndexedVertexArray#optimize()
+     */
+    public VertexCache(IndexedVertexArray array){
+        super();
+        if (null == array)
+            throw new IllegalArgumentException();
+        else if (VertexArray.Type.Triangles != array.type)
+            throw new IllegalArgumentException(array.type.name());
+        else {
+            final int[] indeces = array.indeces;
+            final int count = (3 * (array.countIndeces / 3));
+
+            this.countTriangles = (count / 3);
+            this.acmrBefore = ACMR(indeces,count,FifoSize);
+
+            Triangles(indeces,count,array.countVertices);
+
+            Fetch(indeces,count,array.vertices,array.normals,array.countVertices);
+
+            this.acmrAfter = ACMR(indeces,count,FifoSize);
+        }
+    }
+
+
+    public String toString(){
+        return String.format("triangles %d, ACMR %.3f to %.3f",this.countTriangles,this.acmrBefore,this.acmrAfter);
+    }
+
+
+    /**
+     * Simulate a FIFO post transform vertex cache.
+     * @param indeces Triangle list
+     * @param count Number of indeces
+     * @param size Number of cache entries
+     * @return Cache misses per triangle, or zero for no triangles
+     */
+    public final static float ACMR(int[] indeces, int count, int size){
+        final int triangles = (count / 3);
+        if (1 > triangles)
+            return ZERO;
+        else {
+            final int[] fifo = new int[size];
+            java.util.Arrays.fill(fifo,-1);
+            int head = 0, misses = 0;
+
+            for (int cc = 0, end = (3 * triangles); cc < end; cc++){
+                final int v = indeces[cc];
+                boolean hit = false;
+                for (int f = 0; f < size; f++){
+                    if (v == fifo[f]){
+                        hit = true;
+                        break;
+                    }
+                }
+                if (!hit){
+                    misses += 1;
+                    fifo[head] = v;
+                    head = ((head + 1) % size);
+                }
+            }
+            return ((float)misses / (float)triangles);
+        }
+    }
+    /**
+     * Reorder the triangles of a triangle list for the post transform
+     * vertex cache, in place.  The corner order of each triangle is
+     * retained.
+     * @param indeces Triangle list
+     * @param count Number of indeces
+     * @param countVertices Number of vertices in the pool
+     */
+    public final static void Triangles(int[] indeces, int count, int countVertices){
+        final int triangles = (count / 3);
+        if (2 > triangles)
+            return;
+        /*
+         * Triangles of each vertex in (adjacent) from (first) for
+         * (remaining), the number not yet emitted
+         */
+        final int[] remaining = new int[countVertices];
+        for (int cc = 0, end = (3 * triangles); cc < end; cc++)
+            remaining[indeces[cc]] += 1;
+
+        final int[] first = new int[countVertices];
+        for (int v = 1; v < countVertices; v++)
+            first[v] = (first[v-1] + remaining[v-1]);
+
+        final int[] adjacent = new int[3 * triangles];
+        {
+            final int[] fill = java.util.Arrays.copyOf(first,countVertices);
+            for (int cc = 0, end = (3 * triangles); cc < end; cc++)
+                adjacent[fill[indeces[cc]]++] = (cc / 3);
+        }
+
+        final float[] vertexScore = new float[countVertices];
+        for (int v = 0; v < countVertices; v++)
+            vertexScore[v] = Score(-1,remaining[v]);
+
+        final float[] triangleScore = new float[triangles];
+        final boolean[] emitted = new boolean[triangles];
+        int best = -1;
+        float bestScore = -1.0f;
+        for (int t = 0, o = 0; t < triangles; t++, o += 3){
+            final float s = (vertexScore[indeces[o]] + vertexScore[indeces[o+1]] + vertexScore[indeces[o+2]]);
+            triangleScore[t] = s;
+            if (s > bestScore){
+                bestScore = s;
+                best = t;
+            }
+        }
+
+        int[] cache = new int[CacheSize + 3];
+        int[] next = new int[CacheSize + 3];
+        int cacheCount = 0;
+
+        final int[] re = new int[3 * triangles];
+        int cursor = 0;
+
+        for (int ro = 0, end = (3 * triangles); ro < end; ro += 3){
+
+            if (0 > best){
+                /*
+                 * No candidate in the cache: the next triangle not
+                 * emitted
+                 */
+                while (emitted[cursor])
+                    cursor++;
+                best = cursor;
+            }
+            final int o = (3 * best);
+            final int a = indeces[o];
+            final int b = indeces[o+1];
+            final int c = indeces[o+2];
+
+            emitted[best] = true;
+            re[ro] = a;
+            re[ro+1] = b;
+            re[ro+2] = c;
+            /*
+             * Drop the emitted triangle from its vertices
+             */
+            for (int k = 0; k < 3; k++){
+                final int v = indeces[o+k];
+                final int from = first[v];
+                final int to = (from + remaining[v] - 1);
+                for (int j = from; j <= to; j++){
+                    if (best == adjacent[j]){
+                        adjacent[j] = adjacent[to];
+                        adjacent[to] = best;
+                        remaining[v] = (to - from);
+                        break;
+                    }
+                }
+            }
+            /*
+             * Move the corners to the front of the LRU cache
+             */
+            int nextCount = 0;
+            next[nextCount++] = a;
+            if (b != a)
+                next[nextCount++] = b;
+            if (c != a && c != b)
+                next[nextCount++] = c;
+
+            for (int j = 0; j < cacheCount; j++){
+                final int v = cache[j];
+                if (v != a && v != b && v != c)
+                    next[nextCount++] = v;
+            }
+            /*
+             * Rescore the vertices of the cache and those falling
+             * out, and the triangles remaining on them
+             */
+            best = -1;
+            bestScore = -1.0f;
+
+            for (int j = 0; j < nextCount; j++){
+                final int v = next[j];
+                final int p = ((j < CacheSize)?(j):(-1));
+                vertexScore[v] = Score(p,remaining[v]);
+            }
+            for (int j = 0; j < nextCount; j++){
+                final int v = next[j];
+                for (int k = first[v], kend = (first[v] + remaining[v]); k < kend; k++){
+                    final int t = adjacent[k];
+                    final int to = (3 * t);
+                    final float s = (vertexScore[indeces[to]] + vertexScore[indeces[to+1]] + vertexScore[indeces[to+2]]);
+                    triangleScore[t] = s;
+                    if (s > bestScore){
+                        bestScore = s;
+                        best = t;
+                    }
+                }
+            }
+            final int[] swap = cache;
+            cache = next;
+            next = swap;
+            cacheCount = Math.min(nextCount,CacheSize);
+        }
+        System.arraycopy(re,0,indeces,0,(3 * triangles));
+    }
+    /**
+     * Renumber the vertex pool in order of first use by the index
+     * list, in place.  Vertices unused by the index list follow in
+     * their original order.
+     * @param indeces Index list
+     * @param count Number of indeces
+     * @param vertices Pool in <i>(X,Y,Z)*</i>
+     * @param normals Optional normals of the pool, or null
+     * @param countVertices Number of vertices in the pool
+     * @return Number of vertices used by the index list
+     */
+    public final static int Fetch(int[] indeces, int count, float[] vertices, float[] normals, int countVertices){
+        final int[] remap = new int[countVertices];
+        java.util.Arrays.fill(remap,-1);
+        int used = 0;
+        for (int cc = 0; cc < count; cc++){
+            final int v = indeces[cc];
+            if (0 > remap[v])
+                remap[v] = used++;
+            indeces[cc] = remap[v];
+        }
+        int next = used;
+        for (int v = 0; v < countVertices; v++){
+            if (0 > remap[v])
+                remap[v] = next++;
+        }
+        Permute(remap,vertices,countVertices);
+        if (null != normals)
+            Permute(remap,normals,countVertices);
+
+        return used;
+    }
+    /**
+     * @param remap Destination index of each source vertex
+     */
+    private final static void Permute(int[] remap, float[] pool, int countVertices){
+        final float[] src = java.util.Arrays.copyOf(pool,(3 * countVertices));
+        for (int v = 0, so = 0; v < countVertices; v++, so += 3){
+            final int d = (3 * remap[v]);
+            pool[d+X] = src[so+X];
+            pool[d+Y] = src[so+Y];
+            pool[d+Z] = src[so+Z];
+        }
+    }
+    /**
+     * @param position LRU cache position, or negative one for a
+     * vertex not in the cache
+     * @param remaining Number of triangles not yet emitted on the
+     * vertex
+     */
+    private final static float Score(int position, int remaining){
+        if (0 == remaining)
+            return -1.0f;
+        else {
+            float score = ZERO;
+            if (-1 < position)
+                score = CacheScore[position];
+
+            if (remaining < ValenceLimit)
+                return (score + ValenceScore[remaining]);
+            else
+                return (score + (float)(ValenceBoostScale * Math.pow(remaining,-ValenceBoostPower)));
+        }
+    }
+}